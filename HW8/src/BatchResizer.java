@@ -0,0 +1,228 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import tester.*;
+
+// Resizes many images to the same target size by seam carving, several at a time on a fixed
+// number of worker threads. Vertical and horizontal seams are removed in the order
+// Picture.retarget picks. Each image is written out as soon as it is done. Only a bounded
+// number of images wait for a worker; when that queue is full, the thread handing out images
+// carves the next one itself, which keeps it from getting further ahead of the workers.
+// usage: java BatchResizer <output directory> <width> <height> <threads> <images or
+//          directories of images>...
+class BatchResizer {
+  int targetWidth; // the width every image is carved down to, if it is wider
+  int targetHeight; // the height every image is carved down to, if it is taller
+  File outDir; // the directory carved images are written to, under their original names
+  int threads; // the number of images carved at the same time
+  int queueSize; // the most images waiting for a worker at once
+  ArrayList<ResizeResult> results; // the images finished so far, in the order they finished
+
+  // the constructor
+  BatchResizer(int targetWidth, int targetHeight, File outDir, int threads, int queueSize) {
+    this.targetWidth = targetWidth;
+    this.targetHeight = targetHeight;
+    this.outDir = outDir;
+    this.threads = threads;
+    this.queueSize = queueSize;
+    this.results = new ArrayList<ResizeResult>();
+  }
+
+  // constructor that lets twice as many images wait as there are workers
+  BatchResizer(int targetWidth, int targetHeight, File outDir, int threads) {
+    this(targetWidth, targetHeight, outDir, threads, 2 * threads);
+  }
+
+  // resizes the images named on the command line
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    if (args.length < 5) {
+      System.err.println("usage: java BatchResizer <output directory> <width> <height> "
+          + "<threads> <images or directories of images>...");
+      System.exit(2);
+    }
+    ArrayList<String> paths = new ArrayList<String>();
+    for (int i = 4; i < args.length; i += 1) {
+      paths.add(args[i]);
+    }
+
+    BatchResizer resizer = new BatchResizer(Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), new File(args[0]), Integer.parseInt(args[3]));
+    resizer.outDir.mkdirs();
+    long start = System.nanoTime();
+    resizer.resize(BatchResizer.listImages(paths));
+    System.out.println(resizer.summary(System.nanoTime() - start));
+  }
+
+  // every image file named by the given paths, where a directory names every image file
+  // directly inside it
+  static ArrayList<File> listImages(ArrayList<String> paths) {
+    ArrayList<File> images = new ArrayList<File>();
+    for (String path : paths) {
+      File file = new File(path);
+      if (file.isDirectory()) {
+        File[] inDir = file.listFiles();
+        if (inDir != null) {
+          for (File child : inDir) {
+            if (BatchResizer.isImage(child)) {
+              images.add(child);
+            }
+          }
+        }
+      }
+      else {
+        images.add(file);
+      }
+    }
+    return images;
+  }
+
+  // is the given file an image that can be carved?
+  static boolean isImage(File file) {
+    String name = file.getName().toLowerCase();
+    return file.isFile() && (name.endsWith(".jpg") || name.endsWith(".jpeg")
+        || name.endsWith(".png") || name.endsWith(".bmp") || name.endsWith(".gif"));
+  }
+
+  // carves every given image on this resizer's workers, returning once all of them are written
+  // EFFECT: writes the carved images to outDir and adds a result for each one to results
+  void resize(ArrayList<File> images) {
+    ThreadPoolExecutor workers = new ThreadPoolExecutor(this.threads, this.threads, 0,
+        TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(this.queueSize),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    for (File image : images) {
+      workers.execute(() -> this.finish(this.resizeOne(image)));
+    }
+    workers.shutdown();
+    try {
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    catch (InterruptedException e) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // carves the given image down to the target size and writes it to outDir
+  ResizeResult resizeOne(File image) {
+    File out = new File(this.outDir, image.getName());
+    long start = System.nanoTime();
+    try {
+      Picture p = new Picture(image.getPath());
+      p.keepHistory(0);
+      p.retarget(this.targetWidth, this.targetHeight);
+      HeadlessCarver.write(p, out.getPath());
+      return new ResizeResult(image, out, System.nanoTime() - start, null);
+    }
+    catch (Exception e) {
+      return new ResizeResult(image, out, System.nanoTime() - start, e.toString());
+    }
+  }
+
+  // records that an image is finished, and reports it right away
+  // EFFECT: adds the given result to results
+  synchronized void finish(ResizeResult result) {
+    this.results.add(result);
+    System.out.println(result);
+  }
+
+  // describes how long the images took, given how long the whole batch took
+  synchronized String summary(long batchNanos) {
+    ArrayList<Long> latencies = new ArrayList<Long>();
+    int failures = 0;
+    for (ResizeResult result : this.results) {
+      latencies.add(result.nanos);
+      if (result.error != null) {
+        failures += 1;
+      }
+    }
+    if (latencies.isEmpty()) {
+      return "no images resized";
+    }
+    Collections.sort(latencies);
+    return String.format(
+        "%d images (%d failed) in %.1f s: %.2f images/s, latency p50 %.1f ms, p95 %.1f ms, "
+            + "max %.1f ms",
+        latencies.size(), failures, batchNanos / 1e9, latencies.size() / (batchNanos / 1e9),
+        latencies.get(latencies.size() / 2) / 1e6,
+        latencies.get((int) Math.ceil(latencies.size() * 0.95) - 1) / 1e6,
+        latencies.get(latencies.size() - 1) / 1e6);
+  }
+}
+
+// Represents how one image in a batch turned out
+class ResizeResult {
+  File input; // the image that was carved
+  File output; // where the carved image was written
+  long nanos; // how long it took to load, carve and write the image
+  String error; // what went wrong, or null if the image was written
+
+  // the constructor
+  ResizeResult(File input, File output, long nanos, String error) {
+    this.input = input;
+    this.output = output;
+    this.nanos = nanos;
+    this.error = error;
+  }
+
+  // describes this result in one line
+  public String toString() {
+    if (this.error != null) {
+      return this.input + " failed after " + this.nanos / 1000000 + " ms: " + this.error;
+    }
+    return this.input + " -> " + this.output + " in " + this.nanos / 1000000 + " ms";
+  }
+}
+
+// Examples class for testing BatchResizer
+class ExamplesBatchResizer {
+
+  // tests resizing several images into a directory
+  void testResize(Tester t) throws IOException {
+    File outDir = Files.createTempDirectory("batchResizerTest").toFile();
+    ArrayList<String> paths = new ArrayList<String>();
+    paths.add("balloons.jpg");
+    paths.add("3by3img.jpg");
+    paths.add("missing.jpg");
+    ArrayList<File> images = BatchResizer.listImages(paths);
+    t.checkExpect(images.size(), 3);
+
+    BatchResizer resizer = new BatchResizer(790, 340, outDir, 2, 1);
+    resizer.resize(images);
+
+    t.checkExpect(resizer.results.size(), 3);
+    int failures = 0;
+    for (ResizeResult result : resizer.results) {
+      if (result.error != null) {
+        failures += 1;
+        t.checkExpect(result.input.getName(), "missing.jpg");
+      }
+    }
+    t.checkExpect(failures, 1);
+
+    // images smaller than the target are written unchanged
+    Picture small = new Picture(new File(outDir, "3by3img.jpg").getPath());
+    t.checkExpect(small.width, 3);
+    t.checkExpect(small.height, 3);
+    Picture carved = new Picture(new File(outDir, "balloons.jpg").getPath());
+    t.checkExpect(carved.width, 790);
+    t.checkExpect(carved.height, 340);
+    t.checkExpect(resizer.summary(1000000000L).startsWith("3 images (1 failed) in 1.0 s"),
+        true);
+
+    // every image file in a directory is found
+    t.checkExpect(BatchResizer.listImages(new ArrayList<String>(
+        java.util.Arrays.asList(outDir.getPath()))).size(), 2);
+
+    for (File written : outDir.listFiles()) {
+      written.delete();
+    }
+    outDir.delete();
+  }
+}
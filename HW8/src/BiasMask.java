@@ -0,0 +1,175 @@
+import tester.*;
+
+// Represents a bias added to the energy of each pixel of a Picture while seams are found: a
+// large positive bias keeps seams away from a pixel (to protect a face or a logo), and a large
+// negative one draws them through it (to remove an object). The biases are packed row after row
+// in one array, each row in a band of stride entries, and are moved along with the pixels as
+// seams are removed and put back, so the bias at a column and row is always that of the pixel
+// there now.
+class BiasMask {
+  static final float PROTECT = 1e6f; // a bias that no seam goes through if it can help it
+  static final float REMOVE = -1e6f; // a bias that seams go through before anything else
+  float[] bias; // the bias of every pixel, row after row, stride apart
+  int stride; // the distance between the starts of consecutive rows in bias
+  int width; // width of the picture the mask is aligned with
+  int height; // height of the picture the mask is aligned with
+  int removals; // the number of pixels left with a negative bias
+
+  // Constructs a mask with no bias, for a picture of the given size
+  BiasMask(int width, int height) {
+    this.bias = new float[width * height];
+    this.stride = width;
+    this.width = width;
+    this.height = height;
+    this.removals = 0;
+  }
+
+  // the bias of the pixel at the given column and row
+  float biasAt(int col, int row) {
+    return this.bias[row * this.stride + col];
+  }
+
+  // the bias of the pixel at the given d1 and d2, in the given direction
+  double biasAt(int d1, int d2, boolean isVertical) {
+    if (isVertical) {
+      return this.bias[d1 * this.stride + d2];
+    }
+    else {
+      return this.bias[d2 * this.stride + d1];
+    }
+  }
+
+  // sets the bias of every pixel in the rectangle with the given top left corner and size,
+  // clipped to the picture
+  // EFFECT: modifies bias and removals
+  void fill(int left, int top, int rectWidth, int rectHeight, float value) {
+    for (int row = Math.max(0, top); row < Math.min(this.height, top + rectHeight); row += 1) {
+      for (int col = Math.max(0, left); col < Math.min(this.width, left + rectWidth);
+          col += 1) {
+        this.set(col, row, value);
+      }
+    }
+  }
+
+  // sets the bias of the pixel at the given column and row
+  // EFFECT: modifies bias and removals
+  void set(int col, int row, float value) {
+    int index = row * this.stride + col;
+    if (this.bias[index] < 0) {
+      this.removals -= 1;
+    }
+    if (value < 0) {
+      this.removals += 1;
+    }
+    this.bias[index] = value;
+  }
+
+  // the bias of the pixel at the given d2 of every d1 of a seam in the given direction
+  float[] biasAlong(int[] path, boolean isVertical) {
+    float[] along = new float[path.length];
+    for (int d1 = 0; d1 < path.length; d1 += 1) {
+      along[d1] = (float) this.biasAt(d1, path[d1], isVertical);
+    }
+    return along;
+  }
+
+  // removes the bias of the seam through the given d2 of every d1, in the given direction
+  // EFFECT: closes up the rows (or columns) the way the seam's pixels were removed, and reduces
+  // width (or height) by one
+  void removeSeam(int[] path, boolean isVertical) {
+    for (int d1 = 0; d1 < path.length; d1 += 1) {
+      if (this.biasAt(d1, path[d1], isVertical) < 0) {
+        this.removals -= 1;
+      }
+    }
+    if (isVertical) {
+      for (int row = 0; row < this.height; row += 1) {
+        int start = row * this.stride;
+        System.arraycopy(this.bias, start + path[row] + 1, this.bias, start + path[row],
+            this.width - path[row] - 1);
+      }
+      this.width -= 1;
+    }
+    else {
+      for (int row = 0; row < this.height - 1; row += 1) {
+        for (int col = 0; col < this.width; col += 1) {
+          if (path[col] <= row) {
+            this.bias[row * this.stride + col] = this.bias[(row + 1) * this.stride + col];
+          }
+        }
+      }
+      this.height -= 1;
+    }
+  }
+
+  // puts back the given biases of the seam through the given d2 of every d1, in the given
+  // direction, undoing removeSeam
+  // EFFECT: opens up the rows (or columns) where the seam goes back, and increases width (or
+  // height) by one
+  void insertSeam(int[] path, float[] along, boolean isVertical) {
+    if (isVertical) {
+      for (int row = 0; row < this.height; row += 1) {
+        int start = row * this.stride;
+        System.arraycopy(this.bias, start + path[row], this.bias, start + path[row] + 1,
+            this.width - path[row]);
+        this.bias[start + path[row]] = along[row];
+      }
+      this.width += 1;
+    }
+    else {
+      for (int row = this.height; row > 0; row -= 1) {
+        for (int col = 0; col < this.width; col += 1) {
+          if (path[col] < row) {
+            this.bias[row * this.stride + col] = this.bias[(row - 1) * this.stride + col];
+          }
+        }
+      }
+      for (int col = 0; col < this.width; col += 1) {
+        this.bias[path[col] * this.stride + col] = along[col];
+      }
+      this.height += 1;
+    }
+    for (float value : along) {
+      if (value < 0) {
+        this.removals += 1;
+      }
+    }
+  }
+}
+
+// Examples class for testing BiasMask
+class ExamplesBiasMask {
+
+  // tests setting biases and keeping them aligned as seams come and go
+  void testRemoveAndInsert(Tester t) {
+    BiasMask mask = new BiasMask(3, 3);
+    mask.fill(1, 0, 5, 1, 2);
+    mask.set(0, 2, BiasMask.REMOVE);
+    mask.set(2, 2, -1);
+    t.checkExpect(mask.bias, new float[] { 0, 2, 2, 0, 0, 0, BiasMask.REMOVE, 0, -1 });
+    t.checkExpect(mask.removals, 2);
+    mask.set(2, 2, 0);
+    t.checkExpect(mask.removals, 1);
+    t.checkInexact(mask.biasAt(2, 0, false), 2.0, 0.000001);
+
+    mask.removeSeam(new int[] { 1, 1, 0 }, true);
+    t.checkExpect(mask.width, 2);
+    t.checkExpect(mask.removals, 0);
+    t.checkExpect(mask.biasAt(1, 0), 2.0f);
+    t.checkExpect(mask.biasAt(0, 2), 0.0f);
+    mask.insertSeam(new int[] { 1, 1, 0 }, new float[] { 2, 0, BiasMask.REMOVE }, true);
+    t.checkExpect(mask.bias, new float[] { 0, 2, 2, 0, 0, 0, BiasMask.REMOVE, 0, 0 });
+    t.checkExpect(mask.removals, 1);
+
+    float[] along = mask.biasAlong(new int[] { 0, 0, 1 }, false);
+    t.checkExpect(along, new float[] { 0, 2, 0 });
+    mask.removeSeam(new int[] { 0, 0, 1 }, false);
+    t.checkExpect(mask.height, 2);
+    t.checkExpect(mask.biasAt(0, 0), 0.0f);
+    t.checkExpect(mask.biasAt(1, 0), 0.0f);
+    t.checkExpect(mask.biasAt(2, 0), 2.0f);
+    t.checkExpect(mask.biasAt(0, 1), BiasMask.REMOVE);
+    mask.insertSeam(new int[] { 0, 0, 1 }, along, false);
+    t.checkExpect(mask.bias, new float[] { 0, 2, 2, 0, 0, 0, BiasMask.REMOVE, 0, 0 });
+  }
+}
@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javalib.worldimages.*;
+
+// Compares the heap footprint and carving speed of the linked SentinelPixel grid in Picture with
+// the packed ARGB rows in PackedPicture and the memory-mapped rows in MappedPicture.
+// usage: java CarvingBenchmark <image file> <number of seams to remove>
+class CarvingBenchmark {
+
+  // runs the benchmark on the image and seam count given on the command line
+  public static void main(String[] args) throws IOException {
+    String imgFileName = "balloons.jpg";
+    int seams = 50;
+    if (args.length > 0) {
+      imgFileName = args[0];
+    }
+    if (args.length > 1) {
+      seams = Integer.parseInt(args[1]);
+    }
+
+    long before = CarvingBenchmark.usedHeap();
+    Picture linked = new Picture(imgFileName);
+    long linkedBytes = CarvingBenchmark.usedHeap() - before;
+
+    before = CarvingBenchmark.usedHeap();
+    PackedPicture packed = new PackedPicture(imgFileName);
+    long packedBytes = CarvingBenchmark.usedHeap() - before;
+
+    int pixels = linked.width * linked.height;
+    System.out.println(imgFileName + ": " + linked.width + "x" + linked.height + ", removing "
+        + seams + " vertical seams");
+    CarvingBenchmark.report("Picture", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(linked, seams), seams);
+    Picture incremental = new Picture(imgFileName);
+    incremental.isIncremental = true;
+    CarvingBenchmark.report("Picture (incremental)", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(incremental, seams), seams);
+    Picture rolling = new Picture(imgFileName);
+    rolling.finder = new RollingSeamFinder();
+    CarvingBenchmark.report("Picture (rolling)", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(rolling, seams), seams);
+    Picture parallel = new Picture(imgFileName);
+    parallel.finder = new RollingSeamFinder();
+    parallel.energyPool = ForkJoinPool.commonPool();
+    CarvingBenchmark.report("Picture (parallel)", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(parallel, seams), seams);
+    Picture wavefront = new Picture(imgFileName);
+    wavefront.finder = new WavefrontSeamFinder(ForkJoinPool.commonPool());
+    wavefront.energyPool = ForkJoinPool.commonPool();
+    CarvingBenchmark.report("Picture (wavefront)", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(wavefront, seams), seams);
+    Picture pyramid = new Picture(imgFileName);
+    PyramidSeamFinder pyramidFinder = new PyramidSeamFinder();
+    System.out.printf("%-22s %10.3f%% heavier than the lightest seam%n", "PyramidSeamFinder",
+        100 * pyramidFinder.excessWeight(pyramid));
+    pyramid.finder = pyramidFinder;
+    CarvingBenchmark.report("Picture (pyramid)", linkedBytes, pixels,
+        CarvingBenchmark.timeLinked(pyramid, seams), seams);
+    CarvingBenchmark.report("PackedPicture", packedBytes, pixels,
+        CarvingBenchmark.timePacked(packed, seams), seams);
+    PixelRaster raster = PixelRaster.read(imgFileName);
+    before = CarvingBenchmark.usedHeap();
+    MappedPicture mapped = MappedPicture.of(raster, Files.createTempDirectory("mapped"));
+    long mappedBytes = CarvingBenchmark.usedHeap() - before;
+    CarvingBenchmark.report("MappedPicture", mappedBytes, pixels,
+        CarvingBenchmark.timeMapped(mapped, seams), seams);
+    mapped.close();
+
+    CarvingBenchmark.compareDirections(imgFileName, seams);
+    CarvingBenchmark.compareBatches(imgFileName, seams);
+    CarvingBenchmark.compareEnergies(imgFileName, seams);
+    CarvingBenchmark.compareKernels(imgFileName);
+    CarvingBenchmark.compareLoading(imgFileName);
+  }
+
+  // compares how fast a PackedPicture carves in each direction, in pixels of the picture
+  // searched a second
+  static void compareDirections(String imgFileName, int seams) {
+    PackedPicture vertical = new PackedPicture(imgFileName);
+    long pixels = (long) vertical.width * vertical.height;
+    long verticalNanos = CarvingBenchmark.timePacked(vertical, seams);
+    PackedPicture horizontal = new PackedPicture(imgFileName);
+    long start = System.nanoTime();
+    for (int i = 0; i < seams; i += 1) {
+      horizontal.removeSeam(false);
+    }
+    long horizontalNanos = System.nanoTime() - start;
+    System.out.printf("%-22s %10.2f megapixels/s%n", "vertical seams",
+        pixels * seams / (verticalNanos / 1e3));
+    System.out.printf("%-22s %10.2f megapixels/s%n", "horizontal seams",
+        pixels * seams / (horizontalNanos / 1e3));
+  }
+
+  // compares reading the image one Color at a time through FromFileImage with reading it into
+  // a PixelRaster in bulk, and building a Picture from the raster
+  static void compareLoading(String imgFileName) {
+    long start = System.nanoTime();
+    PackedPicture.readPixels(new FromFileImage(imgFileName));
+    long perPixel = System.nanoTime() - start;
+    start = System.nanoTime();
+    PixelRaster raster = PixelRaster.read(imgFileName);
+    long bulk = System.nanoTime() - start;
+    start = System.nanoTime();
+    new Picture(raster, new Random());
+    long grid = System.nanoTime() - start;
+    System.out.printf("%-22s %10.1f ms%n", "FromFileImage colors", perPixel / 1e6);
+    System.out.printf("%-22s %10.1f ms%n", "PixelRaster", bulk / 1e6);
+    System.out.printf("%-22s %10.1f ms%n", "Picture from raster", grid / 1e6);
+  }
+
+  // compares measuring the energy of every pixel one at a time, reading its neighbours through
+  // brightnessAt, with the row kernel over the flat brightness plane, in megapixels per second
+  static void compareKernels(String imgFileName) {
+    PackedPicture p = new PackedPicture(imgFileName);
+    double megapixels = p.width * p.height / 1e6;
+    long perPixel = Long.MAX_VALUE;
+    long perRow = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i += 1) {
+      long start = System.nanoTime();
+      for (int row = 0; row < p.height; row += 1) {
+        for (int col = 0; col < p.width; col += 1) {
+          p.energies[row * p.width + col] = p.energyAt(col, row);
+        }
+      }
+      perPixel = Math.min(perPixel, System.nanoTime() - start);
+      start = System.nanoTime();
+      p.updateEnergies();
+      perRow = Math.min(perRow, System.nanoTime() - start);
+    }
+    System.out.printf("%-22s %10.2f megapixels/s%n", "energyAt", megapixels / (perPixel / 1e9));
+    System.out.printf("%-22s %10.2f megapixels/s%n", "rowEnergies", megapixels / (perRow / 1e9));
+  }
+
+  // compares how long each energy function takes to measure every pixel of the image, per
+  // megapixel, and how fast seams are carved with it
+  static void compareEnergies(String imgFileName, int seams) {
+    IEnergyFunction[] functions = new IEnergyFunction[] { new GradientEnergy(),
+        new DualGradientEnergy(), new ForwardEnergy() };
+    for (IEnergyFunction function : functions) {
+      Picture p = new Picture(imgFileName);
+      double megapixels = p.width * p.height / 1e6;
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < 5; i += 1) {
+        p.useEnergy(function);
+        long start = System.nanoTime();
+        p.updateEnergies();
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      long start = System.nanoTime();
+      p.carve(seams, new VerticalMode());
+      long carveNanos = System.nanoTime() - start;
+      System.out.printf("%-22s %10.2f ms/megapixel %10.2f seams/s%n",
+          function.getClass().getSimpleName(), best / 1e6 / megapixels,
+          seams / (carveNanos / 1e9));
+    }
+  }
+
+  // compares removing seams one search at a time with carve against removing as many as
+  // possible per search with carveBatch. Both end up the same size, so the one whose remaining
+  // pixels have more total energy kept more of what matters in the image
+  static void compareBatches(String imgFileName, int seams) {
+    Picture oneAtATime = new Picture(imgFileName);
+    long start = System.nanoTime();
+    oneAtATime.carve(seams, new VerticalMode());
+    long oneAtATimeNanos = System.nanoTime() - start;
+
+    Picture batched = new Picture(imgFileName);
+    start = System.nanoTime();
+    batched.carveBatch(seams, new VerticalMode());
+    long batchedNanos = System.nanoTime() - start;
+
+    double kept = CarvingBenchmark.totalEnergy(oneAtATime);
+    double batchedKept = CarvingBenchmark.totalEnergy(batched);
+    System.out.printf("%-22s %10.2f seams/s, energy kept %.1f%n", "carve", seams
+        / (oneAtATimeNanos / 1e9), kept);
+    System.out.printf("%-22s %10.2f seams/s, energy kept %.1f (%+.3f%% vs carve)%n",
+        "carveBatch", seams / (batchedNanos / 1e9), batchedKept,
+        100 * (batchedKept - kept) / kept);
+  }
+
+  // the sum of the energies of every pixel in the given picture
+  static double totalEnergy(Picture p) {
+    double total = 0;
+    APixel nextRowPixel = p.topLeft;
+    for (int row = 0; row < p.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < p.width; col += 1) {
+        total += p.energyOf(nextPixel);
+        nextPixel = nextPixel.right;
+      }
+    }
+    return total;
+  }
+
+  // the time in nanoseconds it takes the given Picture to remove the given number of vertical
+  // seams, going through the same highlight-then-remove ticks as the world does
+  static long timeLinked(Picture p, int seams) {
+    p.mode = new VerticalMode();
+    p.isVertical = true;
+    long start = System.nanoTime();
+    for (int i = 0; i < seams; i += 1) {
+      p.onTick();
+      p.onTick();
+    }
+    return System.nanoTime() - start;
+  }
+
+  // the time in nanoseconds it takes the given PackedPicture to remove the given number of
+  // vertical seams
+  static long timePacked(PackedPicture p, int seams) {
+    long start = System.nanoTime();
+    for (int i = 0; i < seams; i += 1) {
+      p.removeSeam(true);
+    }
+    return System.nanoTime() - start;
+  }
+
+  // the time in nanoseconds it takes the given MappedPicture to remove the given number of
+  // vertical seams
+  static long timeMapped(MappedPicture p, int seams) {
+    long start = System.nanoTime();
+    for (int i = 0; i < seams; i += 1) {
+      p.removeSeam(true);
+    }
+    return System.nanoTime() - start;
+  }
+
+  // prints one line of results
+  static void report(String name, long bytes, int pixels, long nanos, int seams) {
+    System.out.printf("%-22s %10.1f MB %8.1f bytes/pixel %10.2f seams/s%n", name,
+        bytes / 1048576.0, (double) bytes / pixels, seams / (nanos / 1e9));
+  }
+
+  // the number of bytes currently in use on the heap, after asking for a garbage collection
+  static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i += 1) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
@@ -0,0 +1,318 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import tester.*;
+
+// represents somewhere a Picture reports how long each phase of carving takes. A phase is
+// measured by asking for startNanos and startBytes as it begins, and handing them back to
+// record as it ends, so a sink that keeps nothing costs next to nothing
+interface IMetricsSink {
+  // the time a phase starting now starts at, as this sink measures time
+  long startNanos();
+
+  // the number of bytes the current thread has allocated so far, as this sink measures them
+  long startBytes();
+
+  // records one run of the given phase, which started at the given time and byte count, and
+  // went over the given number of pixels
+  void record(String phase, long startNanos, long startBytes, long pixels);
+
+  // whether this sink keeps what is recorded, so that work done only to be measured apart, and
+  // not needed otherwise, is worth doing
+  boolean isRecording();
+}
+
+// a sink that keeps nothing, and doesn't even look at the clock
+class NoMetrics implements IMetricsSink {
+  // nothing is measured
+  public long startNanos() {
+    return 0;
+  }
+
+  // nothing is measured
+  public long startBytes() {
+    return 0;
+  }
+
+  // nothing is kept
+  public void record(String phase, long startNanos, long startBytes, long pixels) {
+    // keeps nothing
+  }
+
+  // nothing is kept
+  public boolean isRecording() {
+    return false;
+  }
+}
+
+// Counts how many runs of a phase took how long, in buckets that double in size: bucket b holds
+// the runs that took from 2^(b-1) up to 2^b - 1 nanoseconds (bucket 0 holds runs under 1 ns).
+// Adding a run is a few instructions, and percentiles are read off to within a factor of two
+class LatencyHistogram {
+  long[] counts; // the number of runs in each bucket
+  long total; // the number of runs added
+
+  // Constructs an empty histogram
+  LatencyHistogram() {
+    this.counts = new long[64];
+    this.total = 0;
+  }
+
+  // adds a run that took the given number of nanoseconds
+  // EFFECT: modifies counts and total
+  void add(long nanos) {
+    this.counts[64 - Long.numberOfLeadingZeros(Math.max(0, nanos))] += 1;
+    this.total += 1;
+  }
+
+  // an upper bound on the time that the given fraction of runs took no longer than: the top of
+  // the bucket the run at that fraction falls in. 0 if there are no runs
+  long percentile(double fraction) {
+    long rank = (long) Math.ceil(fraction * this.total);
+    long seen = 0;
+    for (int bucket = 0; bucket < this.counts.length; bucket += 1) {
+      seen += this.counts[bucket];
+      if (seen >= rank && seen > 0) {
+        return (1L << bucket) - 1;
+      }
+    }
+    return 0;
+  }
+}
+
+// Represents everything measured about one phase
+class PhaseStats {
+  long count; // the number of runs
+  long totalNanos; // the time all runs took together
+  long maxNanos; // the time the slowest run took
+  long pixels; // the number of pixels all runs went over together
+  long bytes; // the number of bytes all runs allocated together
+  LatencyHistogram latencies; // how many runs took how long
+
+  // Constructs the stats of a phase that has not run yet
+  PhaseStats() {
+    this.latencies = new LatencyHistogram();
+  }
+
+  // adds one run that took the given time, went over the given number of pixels and allocated
+  // the given number of bytes
+  // EFFECT: modifies every field
+  void add(long nanos, long pixels, long bytes) {
+    this.count += 1;
+    this.totalNanos += nanos;
+    this.maxNanos = Math.max(this.maxNanos, nanos);
+    this.pixels += pixels;
+    this.bytes += bytes;
+    this.latencies.add(nanos);
+  }
+
+  // describes these stats in one line
+  public String toString() {
+    return String.format("%d runs, mean %.3f ms, p50 < %.3f ms, p99 < %.3f ms, max %.3f ms, "
+        + "%.1f Mpixels/s, %.0f bytes/run", this.count, this.totalNanos / 1e6 / this.count,
+        this.latencies.percentile(0.5) / 1e6, this.latencies.percentile(0.99) / 1e6,
+        this.maxNanos / 1e6, this.pixels * 1e3 / Math.max(1, this.totalNanos),
+        (double) this.bytes / this.count);
+  }
+}
+
+// Keeps the time, pixels and allocation of every phase a Picture reports, with a latency
+// histogram for each. The bytes a phase allocates are counted on the thread it runs on, which
+// the JVM keeps track of anyway. Safe to read from another thread, such as a JMX client, while a
+// picture is being carved
+class CarvingMetrics implements IMetricsSink, CarvingMetricsMXBean {
+  static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  LinkedHashMap<String, PhaseStats> phases; // the stats of every phase, in the order they
+  // first ran
+
+  // Constructs metrics with nothing measured yet
+  CarvingMetrics() {
+    this.phases = new LinkedHashMap<String, PhaseStats>();
+  }
+
+  // the time now
+  public long startNanos() {
+    return System.nanoTime();
+  }
+
+  // the number of bytes the current thread has allocated so far
+  public long startBytes() {
+    return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  // records one run of the given phase, which started at the given time and byte count, and
+  // went over the given number of pixels
+  // EFFECT: adds the run to the phase's stats
+  public void record(String phase, long startNanos, long startBytes, long pixels) {
+    long nanos = System.nanoTime() - startNanos;
+    long bytes = this.startBytes() - startBytes;
+    synchronized (this) {
+      PhaseStats stats = this.phases.get(phase);
+      if (stats == null) {
+        stats = new PhaseStats();
+        this.phases.put(phase, stats);
+      }
+      stats.add(nanos, pixels, bytes);
+    }
+  }
+
+  // every run is kept
+  public boolean isRecording() {
+    return true;
+  }
+
+  // the stats of the given phase, or stats with no runs if it has not run. They are the live
+  // stats record adds to, so they must only be read while holding this object's lock
+  synchronized PhaseStats stats(String phase) {
+    PhaseStats stats = this.phases.get(phase);
+    if (stats == null) {
+      return new PhaseStats();
+    }
+    return stats;
+  }
+
+  // the names of the phases measured so far
+  public synchronized String[] getPhases() {
+    return new ArrayList<String>(this.phases.keySet()).toArray(new String[0]);
+  }
+
+  // every phase measured so far, one line each
+  public synchronized String getReport() {
+    StringBuilder report = new StringBuilder();
+    for (String phase : this.phases.keySet()) {
+      report.append(String.format("%-12s %s%n", phase, this.phases.get(phase)));
+    }
+    return report.toString();
+  }
+
+  // the number of runs of the given phase
+  public synchronized long count(String phase) {
+    return this.stats(phase).count;
+  }
+
+  // the mean time one run of the given phase took, in nanoseconds
+  public synchronized double meanNanos(String phase) {
+    PhaseStats stats = this.stats(phase);
+    return (double) stats.totalNanos / Math.max(1, stats.count);
+  }
+
+  // an upper bound on the time the given fraction of runs of the given phase took no longer
+  // than, in nanoseconds
+  public synchronized long percentileNanos(String phase, double fraction) {
+    return this.stats(phase).latencies.percentile(fraction);
+  }
+
+  // the number of pixels all runs of the given phase went over together
+  public synchronized long pixels(String phase) {
+    return this.stats(phase).pixels;
+  }
+
+  // the mean number of bytes one run of the given phase allocated
+  public synchronized double bytesPerRun(String phase) {
+    PhaseStats stats = this.stats(phase);
+    return (double) stats.bytes / Math.max(1, stats.count);
+  }
+
+  // forgets everything measured so far
+  // EFFECT: clears phases
+  public synchronized void reset() {
+    this.phases.clear();
+  }
+
+  // shows these metrics through the platform's JMX server, under the given name
+  // returns the name they are registered under
+  // throws a JMException if the name is taken or not a valid name
+  ObjectName register(String name) throws JMException {
+    ObjectName objectName = new ObjectName("seamcarving:type=CarvingMetrics,name=" + name);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+}
+
+// Examples class for testing CarvingMetrics
+class ExamplesCarvingMetrics {
+
+  // tests bucketing run times
+  void testLatencyHistogram(Tester t) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    t.checkExpect(histogram.percentile(0.5), 0L);
+    histogram.add(0);
+    histogram.add(1);
+    histogram.add(1000);
+    histogram.add(1500);
+    t.checkExpect(histogram.counts[0], 1L);
+    t.checkExpect(histogram.counts[1], 1L);
+    t.checkExpect(histogram.counts[10], 1L);
+    t.checkExpect(histogram.counts[11], 1L);
+    t.checkExpect(histogram.percentile(0.5), 1L);
+    t.checkExpect(histogram.percentile(0.75), 1023L);
+    t.checkExpect(histogram.percentile(1), 2047L);
+  }
+
+  // tests measuring a picture being carved, and showing the measurements through JMX
+  void testPictureMetrics(Tester t) throws JMException {
+    Picture p = new Picture("balloons.jpg");
+    CarvingMetrics metrics = new CarvingMetrics();
+    p.useMetrics(metrics);
+    p.carve(3, new VerticalMode());
+    p.makeScene();
+
+    // the seam table is filled in once, then patched after every seam
+    t.checkExpect(metrics.count("seam"), 3L);
+    t.checkExpect(metrics.count("removeSeam"), 3L);
+    t.checkExpect(metrics.count("dp"), 1L);
+    t.checkExpect(metrics.count("patchSeams"), 3L);
+    t.checkExpect(metrics.count("backtrace"), 3L);
+    t.checkExpect(metrics.count("makeScene"), 1L);
+    t.checkExpect(metrics.count("energy"), 4L);
+    t.checkExpect(metrics.pixels("dp"), 800L * 343);
+    t.checkExpect(metrics.pixels("backtrace"), 3L * 343);
+    t.checkExpect(metrics.pixels("removeSeam"), 3L * 343);
+    t.checkExpect(metrics.pixels("patchSeams") < 3L * 800 * 343, true);
+    t.checkExpect(metrics.meanNanos("seam") > 0, true);
+    t.checkExpect(metrics.bytesPerRun("dp") > 0, true);
+    t.checkExpect(metrics.percentileNanos("seam", 1) >= metrics.meanNanos("seam"), true);
+    t.checkExpect(metrics.count("nothing"), 0L);
+    t.checkExpect(metrics.getReport().split("\n").length, metrics.getPhases().length);
+
+    ObjectName name = metrics.register("test");
+    t.checkExpect(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Phases"),
+        metrics.getPhases());
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+
+    metrics.reset();
+    t.checkExpect(metrics.getPhases().length, 0);
+    // pictures that keep no metrics share the same sink, and still compare equal
+    t.checkExpect(new Picture("3by3img.jpg").metrics == Picture.NO_METRICS, true);
+    t.checkExpect(Picture.NO_METRICS.isRecording(), false);
+    t.checkExpect(metrics.isRecording(), true);
+  }
+
+  // tests that finders that keep no seam table report their own dp and backtrace phases
+  void testFinderMetrics(Tester t) {
+    Picture p = new Picture("balloons.jpg");
+    CarvingMetrics metrics = new CarvingMetrics();
+    p.useMetrics(metrics);
+    p.finder = new RollingSeamFinder();
+    p.carve(3, new VerticalMode());
+
+    t.checkExpect(metrics.count("dp"), 3L);
+    t.checkExpect(metrics.pixels("dp"), 800L * 343 + 799 * 343 + 798 * 343);
+    t.checkExpect(metrics.count("backtrace"), 3L);
+    t.checkExpect(metrics.count("energy"), 3L);
+    t.checkExpect(metrics.count("removeSeam"), 3L);
+    t.checkExpect(metrics.count("patchSeams"), 0L);
+
+    metrics.reset();
+    p.finder = new PyramidSeamFinder();
+    p.carve(1, new HorizontalMode());
+    t.checkExpect(metrics.count("dp"), 1L);
+    t.checkExpect(metrics.pixels("dp"), 797L * 343);
+    t.checkExpect(metrics.count("removeSeam"), 1L);
+  }
+}
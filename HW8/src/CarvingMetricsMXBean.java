@@ -0,0 +1,28 @@
+// what CarvingMetrics shows through JMX. JMX only shows interfaces that are public, so this one
+// has a file of its own
+public interface CarvingMetricsMXBean {
+  // the names of the phases measured so far
+  String[] getPhases();
+
+  // every phase measured so far, one line each
+  String getReport();
+
+  // the number of runs of the given phase
+  long count(String phase);
+
+  // the mean time one run of the given phase took, in nanoseconds
+  double meanNanos(String phase);
+
+  // an upper bound on the time the given fraction of runs of the given phase took no longer
+  // than, in nanoseconds
+  long percentileNanos(String phase, double fraction);
+
+  // the number of pixels all runs of the given phase went over together
+  long pixels(String phase);
+
+  // the mean number of bytes one run of the given phase allocated
+  double bytesPerRun(String phase);
+
+  // forgets everything measured so far
+  void reset();
+}
@@ -0,0 +1,213 @@
+import java.awt.Color;
+
+import tester.*;
+
+// represents a way of measuring how much a pixel matters to the picture around it. Seams are
+// the paths whose pixels add up to the least energy
+interface IEnergyFunction {
+  // the energy of the given pixel, when seams run in the given direction
+  double energyOf(APixel pixel, boolean isVertical);
+
+  // the extra cost of a seam reaching the given pixel from the previous d1, at the given step
+  // across it (-1, 0 or 1 for the previous d2, the same d2, or the next d2), when seams run in
+  // the given direction
+  double stepCost(APixel pixel, int step, boolean isVertical);
+
+  // how many pixels away from a pixel its energy reads. Removing or adding a pixel changes the
+  // energies of the pixels within this many pixels of it. Pictures only mark the pixels right
+  // next to a removed or added one as stale, so this is 1 for every function so far
+  int radius();
+
+  // does the energy of a pixel depend on which direction seams run?
+  boolean isDirectional();
+
+  // can a seam cost more than the energies of its pixels?
+  boolean hasStepCosts();
+}
+
+// represents a way of measuring how much a pixel matters that only looks at the pixels right
+// around it, whichever way seams run, and only costs what a seam's pixels add up to
+abstract class AEnergyFunction implements IEnergyFunction {
+  // the extra cost of a seam reaching the given pixel from the previous d1, at the given step
+  // across it: nothing
+  public double stepCost(APixel pixel, int step, boolean isVertical) {
+    return 0;
+  }
+
+  // how many pixels away from a pixel its energy reads
+  public int radius() {
+    return 1;
+  }
+
+  // does the energy of a pixel depend on which direction seams run?
+  public boolean isDirectional() {
+    return false;
+  }
+
+  // can a seam cost more than the energies of its pixels?
+  public boolean hasStepCosts() {
+    return false;
+  }
+}
+
+// measures energy as the size of the brightness gradient across each pixel, from all eight
+// pixels around it: how much darker or lighter one side of the pixel is than the other
+class GradientEnergy extends AEnergyFunction {
+  // the energy of the given pixel
+  public double energyOf(APixel pixel, boolean isVertical) {
+    return pixel.calculateEnergy();
+  }
+}
+
+// measures energy from only the four pixels beside, above and below each pixel: the squares of
+// the brightness differences across it, without a square root. Cheaper than GradientEnergy,
+// and picks much the same seams
+class DualGradientEnergy extends AEnergyFunction {
+  // the energy of the given pixel
+  public double energyOf(APixel pixel, boolean isVertical) {
+    double across = pixel.left.calculateBrightness() - pixel.right.calculateBrightness();
+    double along = pixel.up.calculateBrightness() - pixel.down.calculateBrightness();
+    return across * across + along * along;
+  }
+}
+
+// measures the energy a seam adds to the picture by being removed, rather than the energy it
+// takes out: the brightness differences between the pixels that end up next to each other once
+// it is gone. The pixels either side of a seam's pixel always meet; a seam that steps across
+// also brings the pixel before it in the previous d1 next to the pixel on that side
+class ForwardEnergy extends AEnergyFunction {
+  // the brightness difference between the two pixels either side of the given pixel, which
+  // meet when it is removed
+  public double energyOf(APixel pixel, boolean isVertical) {
+    if (isVertical) {
+      return Math.abs(pixel.right.calculateBrightness() - pixel.left.calculateBrightness());
+    }
+    else {
+      return Math.abs(pixel.down.calculateBrightness() - pixel.up.calculateBrightness());
+    }
+  }
+
+  // the brightness difference between the pixel before the given one in the previous d1 and
+  // the pixel beside the given one on the side the seam came from, which meet when the seam
+  // steps across
+  public double stepCost(APixel pixel, int step, boolean isVertical) {
+    if (step == 0) {
+      return 0;
+    }
+    else if (isVertical && step < 0) {
+      return Math.abs(pixel.up.calculateBrightness() - pixel.left.calculateBrightness());
+    }
+    else if (isVertical) {
+      return Math.abs(pixel.up.calculateBrightness() - pixel.right.calculateBrightness());
+    }
+    else if (step < 0) {
+      return Math.abs(pixel.left.calculateBrightness() - pixel.up.calculateBrightness());
+    }
+    else {
+      return Math.abs(pixel.left.calculateBrightness() - pixel.down.calculateBrightness());
+    }
+  }
+
+  // does the energy of a pixel depend on which direction seams run?
+  public boolean isDirectional() {
+    return true;
+  }
+
+  // can a seam cost more than the energies of its pixels?
+  public boolean hasStepCosts() {
+    return true;
+  }
+}
+
+// Examples class for testing the energy functions
+class ExamplesEnergyFunctions {
+  Picture p3;
+  APixel center;
+
+  // Initializes conditions for testing
+  void initTestConditions() {
+    p3 = new Picture("3by3img.jpg");
+    center = p3.topLeft.down.down.right.right;
+  }
+
+  // the brightness of a pixel of the given gray
+  double gray(int level) {
+    return new Pixel(null, null, null, null, new Color(level, level, level))
+        .calculateBrightness();
+  }
+
+  // tests the energies each function gives the center of a 3x3 picture, which is 20 gray with
+  // 15 above it, 50 below it, 40 left of it and 30 right of it
+  void testEnergyOf(Tester t) {
+    this.initTestConditions();
+
+    t.checkInexact(new GradientEnergy().energyOf(center, true), center.calculateEnergy(),
+        0.000001);
+    t.checkInexact(new DualGradientEnergy().energyOf(center, false),
+        Math.pow(this.gray(40) - this.gray(30), 2) + Math.pow(this.gray(15) - this.gray(50), 2),
+        0.000001);
+    t.checkInexact(new ForwardEnergy().energyOf(center, true), this.gray(40) - this.gray(30),
+        0.000001);
+    t.checkInexact(new ForwardEnergy().energyOf(center, false), this.gray(50) - this.gray(15),
+        0.000001);
+  }
+
+  // tests the extra cost of seams that step across
+  void testStepCost(Tester t) {
+    this.initTestConditions();
+
+    t.checkInexact(new GradientEnergy().stepCost(center, 1, true), 0.0, 0.000001);
+    t.checkInexact(new ForwardEnergy().stepCost(center, 0, true), 0.0, 0.000001);
+    t.checkInexact(new ForwardEnergy().stepCost(center, -1, true),
+        this.gray(40) - this.gray(15), 0.000001);
+    t.checkInexact(new ForwardEnergy().stepCost(center, 1, true),
+        this.gray(30) - this.gray(15), 0.000001);
+    t.checkInexact(new ForwardEnergy().stepCost(center, -1, false),
+        this.gray(40) - this.gray(15), 0.000001);
+    t.checkInexact(new ForwardEnergy().stepCost(center, 1, false),
+        this.gray(50) - this.gray(40), 0.000001);
+    t.checkExpect(new ForwardEnergy().radius(), 1);
+    t.checkExpect(new ForwardEnergy().isDirectional(), true);
+    t.checkExpect(new DualGradientEnergy().isDirectional(), false);
+  }
+
+  // tests carving a picture with each function
+  void testPictureEnergy(Tester t) {
+    Picture table = new Picture("balloons.jpg");
+    Picture rolling = new Picture("balloons.jpg");
+    table.useEnergy(new ForwardEnergy());
+    rolling.useEnergy(new ForwardEnergy());
+    rolling.finder = new RollingSeamFinder();
+    table.isVertical = false;
+    rolling.isVertical = false;
+
+    // both finders add up the step costs the same way
+    SeamInfo seam = table.finder.findSeam(table);
+    t.checkInexact(rolling.finder.findSeam(rolling).totalWeight, seam.totalWeight, 0.000001);
+    t.checkExpect(rolling.finder.lastPath(), table.finder.lastPath());
+    t.checkExpect(table.energyVertical, false);
+
+    // the seams only cost what their pixels add up to without step costs
+    Picture dual = new Picture("balloons.jpg");
+    dual.useEnergy(new DualGradientEnergy());
+    seam = dual.finder.findSeam(dual);
+    double total = 0;
+    for (SeamInfo cell = seam; cell != null; cell = cell.cameFrom) {
+      total += new DualGradientEnergy().energyOf(cell.thisPixel, true);
+    }
+    t.checkInexact(seam.totalWeight, total, 0.000001);
+
+    // switching direction recalculates energies that depend on it, and carving keeps them
+    // up to date
+    table.isVertical = true;
+    table.updateEnergies();
+    t.checkExpect(table.energyVertical, true);
+    t.checkInexact(table.topLeft.down.right.right.energy,
+        new ForwardEnergy().energyOf(table.topLeft.down.right.right, true), 0.000001);
+    table.carve(5, new VerticalMode());
+    Picture fresh = new Picture("balloons.jpg");
+    fresh.useEnergy(new ForwardEnergy());
+    t.checkExpect(fresh.carve(5, new VerticalMode()) > 0, true);
+    t.checkExpect(table.toArgb(), fresh.toArgb());
+  }
+}
@@ -0,0 +1,247 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import tester.*;
+
+// Measures the parts of the seam-carving engine one at a time, on generated square images of
+// several sizes: building a Picture from an image file, a full updateSeams, removeSeam,
+// makeScene, and carving a number of seams from start to finish. Every benchmark is run until
+// it has warmed up, then timed op by op, leaving out the set up each op needs; the bytes each
+// op allocates are counted on its own thread. Results are printed and written as CSV, one line
+// per benchmark and size, so runs can be compared across changes.
+// usage: java EngineBenchmarks [sizes, comma separated] [results file] [seams to carve]
+// Sizes whose linked grid would not fit in the heap are skipped.
+class EngineBenchmarks {
+  long warmupNanos; // how long each benchmark runs before it is timed
+  long measureNanos; // how long each benchmark is timed for
+  int minIterations; // the fewest ops timed for each benchmark, however long they take
+  ArrayList<BenchmarkResult> results; // every benchmark measured so far, in order
+  Picture picture; // the picture the benchmark being measured works on
+
+  // the constructor
+  EngineBenchmarks(long warmupNanos, long measureNanos, int minIterations) {
+    this.warmupNanos = warmupNanos;
+    this.measureNanos = measureNanos;
+    this.minIterations = minIterations;
+    this.results = new ArrayList<BenchmarkResult>();
+  }
+
+  // runs the benchmarks for the sizes named on the command line
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    String sizes = "3,512,2048,8192";
+    String resultsFile = "benchmarks.csv";
+    int seams = 50;
+    if (args.length > 0) {
+      sizes = args[0];
+    }
+    if (args.length > 1) {
+      resultsFile = args[1];
+    }
+    if (args.length > 2) {
+      seams = Integer.parseInt(args[2]);
+    }
+
+    EngineBenchmarks benchmarks = new EngineBenchmarks(1000000000L, 2000000000L, 3);
+    for (String size : sizes.split(",")) {
+      int side = Integer.parseInt(size.trim());
+      if (EngineBenchmarks.fits(side)) {
+        benchmarks.runSize(side, seams);
+      }
+      else {
+        System.out.println(side + "x" + side + ": skipped, the grid would not fit in "
+            + Runtime.getRuntime().maxMemory() / 1048576 + " MB of heap");
+      }
+    }
+    benchmarks.write(resultsFile);
+  }
+
+  // could a picture with the given side, and the one replacing it between ops, fit in the
+  // heap? A Picture takes about 100 bytes a pixel
+  static boolean fits(int side) {
+    return 2 * 100L * side * side < Runtime.getRuntime().maxMemory();
+  }
+
+  // writes a square image with the given side to a temporary PNG file: soft gradients with
+  // sharp-edged blocks over them, the same every time
+  // returns the path of the file
+  static String writeImage(int side) throws IOException {
+    BufferedImage img = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+    Random r = new Random(side);
+    for (int row = 0; row < side; row += 1) {
+      for (int col = 0; col < side; col += 1) {
+        img.setRGB(col, row, (col * 255 / side) << 16 | (row * 255 / side) << 8 | 128);
+      }
+    }
+    for (int block = 0; block < 20; block += 1) {
+      int blockSide = Math.max(1, side / 10);
+      int left = r.nextInt(side);
+      int top = r.nextInt(side);
+      int color = r.nextInt(0x1000000);
+      for (int row = top; row < Math.min(side, top + blockSide); row += 1) {
+        for (int col = left; col < Math.min(side, left + blockSide); col += 1) {
+          img.setRGB(col, row, color);
+        }
+      }
+    }
+    File file = File.createTempFile("benchmark" + side + "_", ".png");
+    file.deleteOnExit();
+    ImageIO.write(img, "png", file);
+    return file.getPath();
+  }
+
+  // runs every benchmark on a generated image with the given side, carving the given number of
+  // seams in the end-to-end benchmark
+  // EFFECT: adds a result for each benchmark to results
+  void runSize(int side, int seams) throws IOException {
+    String file = EngineBenchmarks.writeImage(side);
+    int carved = Math.min(seams, side - 1);
+
+    this.measure("construct", side, () -> this.picture = null,
+        () -> this.picture = new Picture(file));
+    this.picture = new Picture(file);
+    this.measure("updateSeams", side, () -> this.picture.markAllStale(),
+        () -> this.picture.updateSeams(new ArrayList<ArrayList<SeamInfo>>()));
+    this.measure("removeSeam", side, () -> this.nextSeam(file),
+        () -> this.picture.removeSeam());
+    this.measure("makeScene (whole frame)", side, () -> this.picture.frame = null,
+        () -> this.picture.makeScene());
+    this.measure("makeScene (after a seam)", side, () -> {
+      this.nextSeam(file);
+      this.picture.removeSeam();
+    }, () -> this.picture.makeScene());
+    this.measure("carve " + carved + " seams", side, () -> this.picture = new Picture(file),
+        () -> this.picture.carve(carved, new VerticalMode()));
+    this.picture = null;
+  }
+
+  // finds the next vertical seam to remove from the picture, starting over with a new picture
+  // from the given file once it is down to two pixels wide
+  // EFFECT: modifies picture and its seamToRemove
+  void nextSeam(String file) {
+    if (this.picture.width <= 2 || this.picture.height <= 2) {
+      this.picture = new Picture(file);
+    }
+    this.picture.isVertical = true;
+    this.picture.seamToRemove = this.picture.finder.findSeam(this.picture);
+  }
+
+  // runs the given op, with the given set up before each one, until it has warmed up, then
+  // times it op by op for at least minIterations ops and until measureNanos have gone by, set
+  // up included
+  // returns the result, after adding it to results and printing it
+  BenchmarkResult measure(String name, int side, Runnable setUp, Runnable op) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    long warmupEnd = System.nanoTime() + this.warmupNanos;
+    while (System.nanoTime() < warmupEnd) {
+      setUp.run();
+      op.run();
+    }
+
+    long measureEnd = System.nanoTime() + this.measureNanos;
+    int iterations = 0;
+    long totalNanos = 0;
+    long minNanos = Long.MAX_VALUE;
+    long totalBytes = 0;
+    while (System.nanoTime() < measureEnd || iterations < this.minIterations) {
+      setUp.run();
+      long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      op.run();
+      long nanos = System.nanoTime() - start;
+      totalBytes += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+      totalNanos += nanos;
+      minNanos = Math.min(minNanos, nanos);
+      iterations += 1;
+    }
+
+    BenchmarkResult result = new BenchmarkResult(name, side, iterations,
+        (double) totalNanos / iterations, minNanos, (double) totalBytes / iterations);
+    this.results.add(result);
+    System.out.println(result);
+    return result;
+  }
+
+  // writes every result so far to the given file as CSV, with a header line
+  // throws an IOException if the file cannot be written
+  void write(String fileName) throws IOException {
+    PrintWriter out = new PrintWriter(fileName);
+    out.println(BenchmarkResult.CSV_HEADER);
+    for (BenchmarkResult result : this.results) {
+      out.println(result.toCsv());
+    }
+    out.close();
+  }
+}
+
+// Represents how one benchmark did at one image size
+class BenchmarkResult {
+  static final String CSV_HEADER = "benchmark,side,iterations,mean_ns,min_ns,bytes_per_op";
+  String name; // what was measured
+  int side; // the width and height of the image it was measured on
+  int iterations; // the number of ops timed
+  double meanNanos; // the average time of one op
+  long minNanos; // the fastest op
+  double bytesPerOp; // the average number of bytes one op allocated
+
+  // the constructor
+  BenchmarkResult(String name, int side, int iterations, double meanNanos, long minNanos,
+      double bytesPerOp) {
+    this.name = name;
+    this.side = side;
+    this.iterations = iterations;
+    this.meanNanos = meanNanos;
+    this.minNanos = minNanos;
+    this.bytesPerOp = bytesPerOp;
+  }
+
+  // describes this result in one line
+  public String toString() {
+    return String.format("%-26s %5dx%-5d %12.3f ms/op (min %.3f) %14.0f bytes/op  (%d ops)",
+        this.name, this.side, this.side, this.meanNanos / 1e6, this.minNanos / 1e6,
+        this.bytesPerOp, this.iterations);
+  }
+
+  // this result as one line of CSV, in the order of CSV_HEADER
+  String toCsv() {
+    return String.format("\"%s\",%d,%d,%.0f,%d,%.0f", this.name, this.side, this.iterations,
+        this.meanNanos, this.minNanos, this.bytesPerOp);
+  }
+}
+
+// Examples class for testing EngineBenchmarks
+class ExamplesEngineBenchmarks {
+
+  // tests running the benchmarks on a tiny image
+  void testRunSize(Tester t) throws IOException {
+    EngineBenchmarks benchmarks = new EngineBenchmarks(0, 0, 2);
+    benchmarks.runSize(3, 50);
+
+    t.checkExpect(benchmarks.results.size(), 6);
+    t.checkExpect(benchmarks.results.get(0).name, "construct");
+    t.checkExpect(benchmarks.results.get(5).name, "carve 2 seams");
+    t.checkExpect(benchmarks.results.get(2).iterations, 2);
+    t.checkExpect(benchmarks.results.get(0).bytesPerOp > 0, true);
+    t.checkExpect(benchmarks.picture, null);
+
+    File out = File.createTempFile("benchmarks", ".csv");
+    benchmarks.write(out.getPath());
+    t.checkExpect(java.nio.file.Files.readAllLines(out.toPath()).size(), 7);
+    t.checkExpect(java.nio.file.Files.readAllLines(out.toPath()).get(1).startsWith(
+        "\"construct\",3,2,"), true);
+    out.delete();
+
+    t.checkExpect(EngineBenchmarks.fits(3), true);
+    t.checkExpect(EngineBenchmarks.fits(1000000), false);
+  }
+}
@@ -0,0 +1,116 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import tester.*;
+
+// Carves an image from the command line as fast as possible and writes the result to a file,
+// without opening a window or waiting on World ticks.
+// usage: java HeadlessCarver <input image> <output image> <vertical seams> [horizontal seams]
+//          [--parallel]
+// The output format is picked from the output file's extension. A negative number of seams adds
+// that many seams instead, making the image wider or taller. --parallel computes the first
+// full energy pass on every core; after that, each seam only touches the pixels next to the last
+// one.
+class HeadlessCarver {
+
+  // carves the image named on the command line
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    if (args.length < 3) {
+      System.err.println("usage: java HeadlessCarver <input image> <output image> "
+          + "<vertical seams> [horizontal seams] [--parallel]");
+      System.exit(2);
+    }
+    int horizontalSeams = 0;
+    boolean isParallel = false;
+    for (int i = 3; i < args.length; i += 1) {
+      if (args[i].equals("--parallel")) {
+        isParallel = true;
+      }
+      else {
+        horizontalSeams = Integer.parseInt(args[i]);
+      }
+    }
+
+    long start = System.nanoTime();
+    Picture p = HeadlessCarver.carve(args[0], Integer.parseInt(args[2]), horizontalSeams,
+        isParallel);
+    HeadlessCarver.write(p, args[1]);
+    System.out.printf("%s -> %s: %dx%d in %.1f ms%n", args[0], args[1], p.width, p.height,
+        (System.nanoTime() - start) / 1e6);
+  }
+
+  // loads the image in the given file and removes the given numbers of vertical and then
+  // horizontal seams from it, adding seams instead for a negative number
+  static Picture carve(String inFileName, int verticalSeams, int horizontalSeams,
+      boolean isParallel) {
+    Picture p = new Picture(inFileName);
+    // nothing is ever undone here, so the removed pixels need not be kept
+    p.keepHistory(0);
+    if (isParallel) {
+      p.energyPool = ForkJoinPool.commonPool();
+    }
+    HeadlessCarver.resize(p, verticalSeams, new VerticalMode());
+    HeadlessCarver.resize(p, horizontalSeams, new HorizontalMode());
+    return p;
+  }
+
+  // removes the given number of seams from the given picture in the direction of the given
+  // mode, or adds seams if the number is negative
+  // EFFECT: changes the width or height of the given picture
+  static void resize(Picture p, int seams, IMode mode) {
+    if (seams < 0) {
+      p.enlarge(-seams, mode);
+    }
+    else {
+      p.carve(seams, mode);
+    }
+  }
+
+  // writes the given picture to the given file, in the format its extension names
+  // throws an IOException if the file cannot be written or the format is unknown
+  static void write(Picture p, String outFileName) throws IOException {
+    HeadlessCarver.write(p.toArgb(), p.width, p.height, outFileName);
+  }
+
+  // writes an image of the given size with the given ARGB colors, row after row, to the given
+  // file, in the format its extension names
+  // throws an IOException if the file cannot be written or the format is unknown
+  static void write(int[] argb, int width, int height, String outFileName) throws IOException {
+    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    img.setRGB(0, 0, width, height, argb, 0, width);
+    String format = outFileName.substring(outFileName.lastIndexOf('.') + 1);
+    if (!ImageIO.write(img, format, new File(outFileName))) {
+      throw new IOException("no writer for image format " + format);
+    }
+  }
+}
+
+// Examples class for testing HeadlessCarver
+class ExamplesHeadlessCarver {
+
+  // tests carving an image and writing it back out
+  void testCarveAndWrite(Tester t) throws IOException {
+    Picture p = HeadlessCarver.carve("balloons.jpg", 30, 10, false);
+    t.checkExpect(p.width, 770);
+    t.checkExpect(p.height, 333);
+    t.checkExpect(p.history.size(), 0);
+
+    File out = File.createTempFile("carved", ".png");
+    HeadlessCarver.write(p, out.getPath());
+    BufferedImage written = ImageIO.read(out);
+    t.checkExpect(written.getWidth(), 770);
+    t.checkExpect(written.getHeight(), 333);
+    t.checkExpect(written.getRGB(5, 7), p.toArgb()[7 * 770 + 5]);
+    out.delete();
+
+    // a negative number of seams makes the image bigger
+    Picture wider = HeadlessCarver.carve("balloons.jpg", -30, 0, false);
+    t.checkExpect(wider.width, 830);
+    t.checkExpect(wider.height, 343);
+  }
+}
@@ -0,0 +1,623 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import tester.*;
+
+// Represents a picture being compressed whose pixels live in memory-mapped files instead of the
+// heap, so pictures far bigger than the heap can be carved. The ARGB colors are kept row after
+// row in a file mapped in tiles of whole rows; every row keeps its original length (stride), and
+// removing a seam compacts the rows in place. The choice each pixel makes while a seam is being
+// found is kept in a second mapped file. Energies are worked out from a rolling window of three
+// rows of brightness as the search sweeps the picture rather than stored, so the heap only ever
+// holds a few rows (or, for horizontal seams, a block of columns) at a time. Seams are found and
+// removed exactly like Picture and PackedPicture do. Images are read into the pixel file and
+// written back out a band of rows at a time, so the whole image is never on the heap either.
+// usage: java MappedPicture <input image> <output TIFF> <vertical seams> <horizontal seams>
+// The picture's files are kept next to the output image while it is carved.
+class MappedPicture {
+  static final long BAND_BYTES = 64L << 20; // the most bytes of pixels read or written at once
+  long tileBytes; // the most bytes mapped in one piece. Rows never straddle two pixel tiles
+  long blockBytes; // the most bytes of energies held at once while finding a horizontal seam
+  int width; // width of the image in pixels
+  int height; // height of the image in pixels
+  int stride; // the number of pixels between the starts of consecutive rows
+  int rowsPerTile; // the number of rows in each pixel tile
+  File pixelFile; // the file holding the pixels
+  FileChannel pixels; // the open pixel file
+  IntBuffer[] pixelTiles; // the pixel file, mapped rowsPerTile rows at a time
+  File cameFromFile; // the file holding which way the best seam through each pixel came from
+  FileChannel cameFrom; // the open cameFrom file
+  MappedByteBuffer[] cameFromTiles; // the cameFrom file, mapped tileBytes at a time
+  double seamWeight; // the total weight of the last seam found
+
+  // Constructs a black MappedPicture of the given size, keeping its files in the given directory
+  // and mapping them in pieces of at most the given numbers of bytes
+  // throws an IOException if the files can't be made
+  MappedPicture(Path dir, int width, int height, long tileBytes, long blockBytes)
+      throws IOException {
+    this.tileBytes = tileBytes;
+    this.blockBytes = blockBytes;
+    this.width = width;
+    this.height = height;
+    this.stride = width;
+    this.rowsPerTile = (int) Math.max(1, Math.min(height, tileBytes / (4L * width)));
+
+    this.pixelFile = Files.createTempFile(dir, "pixels", ".raw").toFile();
+    this.pixelFile.deleteOnExit();
+    this.pixels = FileChannel.open(this.pixelFile.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.pixelTiles = new IntBuffer[(height + this.rowsPerTile - 1) / this.rowsPerTile];
+    for (int tile = 0; tile < this.pixelTiles.length; tile += 1) {
+      int rows = Math.min(this.rowsPerTile, height - tile * this.rowsPerTile);
+      this.pixelTiles[tile] = this.pixels.map(FileChannel.MapMode.READ_WRITE,
+          4L * tile * this.rowsPerTile * width, 4L * rows * width).asIntBuffer();
+    }
+
+    this.cameFromFile = Files.createTempFile(dir, "cameFrom", ".raw").toFile();
+    this.cameFromFile.deleteOnExit();
+    this.cameFrom = FileChannel.open(this.cameFromFile.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long cameFromBytes = (long) width * height;
+    this.cameFromTiles = new MappedByteBuffer[(int) ((cameFromBytes + tileBytes - 1)
+        / tileBytes)];
+    for (int tile = 0; tile < this.cameFromTiles.length; tile += 1) {
+      this.cameFromTiles[tile] = this.cameFrom.map(FileChannel.MapMode.READ_WRITE,
+          tile * tileBytes, Math.min(tileBytes, cameFromBytes - tile * tileBytes));
+    }
+  }
+
+  // Constructs a MappedPicture of the given size in the given directory, mapped a gigabyte at a
+  // time and holding up to 16 MB of energies
+  // throws an IOException if the files can't be made
+  MappedPicture(Path dir, int width, int height) throws IOException {
+    this(dir, width, height, 1L << 30, 16L << 20);
+  }
+
+  // carves the image named on the command line and writes it as a TIFF
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    if (args.length != 4) {
+      System.err.println("usage: java MappedPicture <input image> <output TIFF> "
+          + "<vertical seams> <horizontal seams>");
+      System.exit(2);
+    }
+    long start = System.nanoTime();
+    Path dir = new File(args[1]).getAbsoluteFile().toPath().getParent();
+    MappedPicture p = MappedPicture.read(args[0], dir, MappedPicture.BAND_BYTES);
+    int verticalSeams = Math.min(Integer.parseInt(args[2]), p.width - 1);
+    int horizontalSeams = Math.min(Integer.parseInt(args[3]), p.height - 1);
+    for (int seam = 0; seam < verticalSeams; seam += 1) {
+      p.removeSeam(true);
+    }
+    for (int seam = 0; seam < horizontalSeams; seam += 1) {
+      p.removeSeam(false);
+    }
+    p.write(args[1], MappedPicture.BAND_BYTES);
+    p.close();
+    System.out.printf("%s -> %s: %dx%d in %.1f ms%n", args[0], args[1], p.width, p.height,
+        (System.nanoTime() - start) / 1e6);
+  }
+
+  // a MappedPicture holding the image in the given file, with its files in the given directory.
+  // The image is decoded a band of rows at a time, each band holding at most bandBytes of
+  // pixels. Readers that can't seek within an image decode the rows above each band again, so
+  // bigger bands read faster. If the image can't be decoded, the picture's files are deleted
+  // again
+  // throws an IOException if the file can't be read as an image, or the files can't be made
+  static MappedPicture read(String imgFileName, Path dir, long bandBytes) throws IOException {
+    ImageInputStream in = ImageIO.createImageInputStream(new File(imgFileName));
+    if (in == null) {
+      throw new IOException("can't open image file " + imgFileName);
+    }
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+    if (!readers.hasNext()) {
+      in.close();
+      throw new IOException("no reader for image file " + imgFileName);
+    }
+    ImageReader reader = readers.next();
+    try {
+      reader.setInput(in);
+      int width = reader.getWidth(0);
+      int height = reader.getHeight(0);
+      MappedPicture p = new MappedPicture(dir, width, height);
+      try {
+        int bandRows = (int) Math.max(1, Math.min(height, bandBytes / (4L * width)));
+        int[] band = new int[bandRows * width];
+        int[] row = new int[width];
+        ImageReadParam param = reader.getDefaultReadParam();
+        for (int top = 0; top < height; top += bandRows) {
+          int rows = Math.min(bandRows, height - top);
+          param.setSourceRegion(new Rectangle(0, top, width, rows));
+          reader.read(0, param).getRGB(0, 0, width, rows, band, 0, width);
+          for (int r = 0; r < rows; r += 1) {
+            System.arraycopy(band, r * width, row, 0, width);
+            p.writeRow(top + r, row, 0, width);
+          }
+        }
+        return p;
+      }
+      catch (IOException | RuntimeException e) {
+        p.close();
+        throw e;
+      }
+    }
+    finally {
+      reader.dispose();
+      in.close();
+    }
+  }
+
+  // writes this picture to the given file as an image, a band of rows at a time, each band
+  // holding at most bandBytes of pixels. The image is written empty first and its pixels are
+  // replaced band by band, which only writers for formats such as TIFF can do
+  // throws an IOException if the file can't be written, or no writer for its format can
+  // replace pixels
+  void write(String outFileName, long bandBytes) throws IOException {
+    String format = outFileName.substring(outFileName.lastIndexOf('.') + 1);
+    File file = new File(outFileName);
+    file.delete();
+    ImageOutputStream out = ImageIO.createImageOutputStream(file);
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(format);
+    ImageWriter writer = null;
+    while (writers.hasNext() && writer == null) {
+      ImageWriter next = writers.next();
+      next.setOutput(out);
+      if (next.canWriteEmpty()) {
+        writer = next;
+      }
+      else {
+        next.dispose();
+      }
+    }
+    if (writer == null) {
+      out.close();
+      file.delete();
+      throw new IOException("no writer for image format " + format + " that writes in bands");
+    }
+    try {
+      writer.prepareWriteEmpty(null,
+          ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB),
+          this.width, this.height, null, null, null);
+      writer.endWriteEmpty();
+      writer.prepareReplacePixels(0, new Rectangle(0, 0, this.width, this.height));
+      int bandRows = (int) Math.max(1, Math.min(this.height, bandBytes / (4L * this.width)));
+      int[] row = new int[this.width];
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      for (int top = 0; top < this.height; top += bandRows) {
+        int rows = Math.min(bandRows, this.height - top);
+        BufferedImage band = new BufferedImage(this.width, rows, BufferedImage.TYPE_INT_RGB);
+        for (int r = 0; r < rows; r += 1) {
+          this.readRow(top + r, row, 0, this.width);
+          band.setRGB(0, r, this.width, 1, row, 0, this.width);
+        }
+        param.setDestinationOffset(new Point(0, top));
+        writer.replacePixels(band, param);
+      }
+      writer.endReplacePixels();
+    }
+    finally {
+      writer.dispose();
+      out.close();
+    }
+  }
+
+  // a MappedPicture holding the colors of the given raster, with its files in the given directory.
+  // Only for images that fit in the heap; read decodes bigger ones a band at a time
+  // throws an IOException if the files can't be made
+  static MappedPicture of(PixelRaster raster, Path dir) throws IOException {
+    MappedPicture p = new MappedPicture(dir, raster.width, raster.height);
+    int[] row = new int[raster.width];
+    for (int r = 0; r < raster.height; r += 1) {
+      System.arraycopy(raster.argb, r * raster.width, row, 0, raster.width);
+      p.writeRow(r, row, 0, raster.width);
+    }
+    return p;
+  }
+
+  // copies n pixels of the given row, starting at the given column, into the start of the given
+  // array
+  // EFFECT: modifies the given array
+  void readRow(int row, int[] into, int from, int n) {
+    IntBuffer tile = this.pixelTiles[row / this.rowsPerTile].duplicate();
+    tile.position((row % this.rowsPerTile) * this.stride + from);
+    tile.get(into, 0, n);
+  }
+
+  // copies the first n pixels of the given array into the given row, starting at the given
+  // column
+  // EFFECT: modifies the pixel file
+  void writeRow(int row, int[] argb, int from, int n) {
+    IntBuffer tile = this.pixelTiles[row / this.rowsPerTile].duplicate();
+    tile.position((row % this.rowsPerTile) * this.stride + from);
+    tile.put(argb, 0, n);
+  }
+
+  // copies the ARGB colors of this picture into a new array, row after row. Only for pictures
+  // that fit in the heap; write streams bigger ones out a band at a time
+  int[] toArgb() {
+    int[] argb = new int[this.width * this.height];
+    int[] row = new int[this.width];
+    for (int r = 0; r < this.height; r += 1) {
+      this.readRow(r, row, 0, this.width);
+      System.arraycopy(row, 0, argb, r * this.width, this.width);
+    }
+    return argb;
+  }
+
+  // the choice the best seam through the given cell made, for the cell at the given index
+  byte cameFromAt(long index) {
+    return this.cameFromTiles[(int) (index / this.tileBytes)].get((int) (index % this.tileBytes));
+  }
+
+  // records the choice the best seam through the cell at the given index made
+  // EFFECT: modifies the cameFrom file
+  void setCameFrom(long index, byte step) {
+    this.cameFromTiles[(int) (index / this.tileBytes)].put((int) (index % this.tileBytes), step);
+  }
+
+  // fills the given array with the brightness of n + 2 pixels of the given row, starting one
+  // before the given column. Pixels off the edge of the picture are black
+  // EFFECT: modifies the given arrays, using argb to hold the row's colors
+  void brightnessOf(int row, int from, int n, int[] argb, double[] into) {
+    if (row < 0 || row >= this.height) {
+      Arrays.fill(into, 0, n + 2, 0);
+      return;
+    }
+    int low = Math.max(0, from - 1);
+    int high = Math.min(this.width, from + n + 1);
+    this.readRow(row, argb, low, high - low);
+    into[0] = 0;
+    into[n + 1] = 0;
+    for (int col = low; col < high; col += 1) {
+      int color = argb[col - low];
+      into[col - from + 1] = ((double) (((color >> 16) & 0xFF) + ((color >> 8) & 0xFF)
+          + (color & 0xFF))) / 3 / 255.0;
+    }
+  }
+
+  // calculates the energies of n pixels from the brightness of the rows above, at and below
+  // them, each holding the pixels before and after them too, into out from the given index. The
+  // same terms are added up in the same order as in PackedPicture.rowEnergies
+  // EFFECT: modifies out
+  static void rowEnergies(double[] above, double[] middle, double[] below, int n, double[] out,
+      int outStart, int outStep) {
+    for (int i = 1; i <= n; i += 1) {
+      double horiz = (above[i - 1] + 2 * middle[i - 1] + below[i - 1])
+          - (above[i + 1] + 2 * middle[i + 1] + below[i + 1]);
+      double vert = (above[i - 1] + 2 * above[i] + above[i + 1])
+          - (below[i - 1] + 2 * below[i] + below[i + 1]);
+      out[outStart + (i - 1) * outStep] = Math.sqrt(horiz * horiz + vert * vert);
+    }
+  }
+
+  // finds the seam with the least total weight in the given direction, like PackedPicture. For
+  // a vertical seam, the result holds the column of the seam's pixel in each row; for a
+  // horizontal seam, it holds the row of the seam's pixel in each column
+  // EFFECT: modifies the cameFrom file and seamWeight
+  int[] findSeam(boolean isVertical) {
+    if (isVertical) {
+      return this.findVerticalSeam();
+    }
+    else {
+      return this.findHorizontalSeam();
+    }
+  }
+
+  // finds the lightest vertical seam, sweeping down the rows once with three rows of brightness
+  // EFFECT: modifies the cameFrom file and seamWeight
+  int[] findVerticalSeam() {
+    int[] argb = new int[this.width];
+    double[] above = new double[this.width + 2];
+    double[] middle = new double[this.width + 2];
+    double[] below = new double[this.width + 2];
+    double[] energies = new double[this.width];
+    double[] prevWeights = new double[this.width];
+    double[] weights = new double[this.width];
+    this.brightnessOf(0, 0, this.width, argb, middle);
+
+    for (int row = 0; row < this.height; row += 1) {
+      this.brightnessOf(row + 1, 0, this.width, argb, below);
+      MappedPicture.rowEnergies(above, middle, below, this.width, energies, 0, 1);
+      this.relax(row, this.width, energies, 0, 1, prevWeights, weights);
+
+      double[] done = prevWeights;
+      prevWeights = weights;
+      weights = done;
+      double[] oldAbove = above;
+      above = middle;
+      middle = below;
+      below = oldAbove;
+    }
+    return this.traceSeam(this.height, this.width, prevWeights);
+  }
+
+  // finds the lightest horizontal seam, a block of columns at a time: the energies of a block
+  // are worked out sweeping down its rows, then the block's columns are filled in one after the
+  // other
+  // EFFECT: modifies the cameFrom file and seamWeight
+  int[] findHorizontalSeam() {
+    int block = (int) Math.max(1, Math.min(this.width, this.blockBytes / (8L * this.height)));
+    int[] argb = new int[block + 2];
+    double[] above = new double[block + 2];
+    double[] middle = new double[block + 2];
+    double[] below = new double[block + 2];
+    double[] energies = new double[block * this.height];
+    double[] prevWeights = new double[this.height];
+    double[] weights = new double[this.height];
+
+    for (int blockStart = 0; blockStart < this.width; blockStart += block) {
+      int n = Math.min(block, this.width - blockStart);
+      Arrays.fill(above, 0);
+      this.brightnessOf(0, blockStart, n, argb, middle);
+      for (int row = 0; row < this.height; row += 1) {
+        this.brightnessOf(row + 1, blockStart, n, argb, below);
+        // the energies of each column of the block are kept together
+        MappedPicture.rowEnergies(above, middle, below, n, energies, row, this.height);
+        double[] oldAbove = above;
+        above = middle;
+        middle = below;
+        below = oldAbove;
+      }
+      for (int i = 0; i < n; i += 1) {
+        this.relax(blockStart + i, this.height, energies, i * this.height, 1, prevWeights,
+            weights);
+        double[] done = prevWeights;
+        prevWeights = weights;
+        weights = done;
+      }
+    }
+    return this.traceSeam(this.width, this.height, prevWeights);
+  }
+
+  // fills in the total weights of every d2 in the given d1 from those of the previous d1, and
+  // records the choice each one made. Ties go the same way as in Picture.updateSeams
+  // EFFECT: modifies weights and the cameFrom file
+  void relax(int d1, int bound2, double[] energies, int energyStart, int energyStep,
+      double[] prevWeights, double[] weights) {
+    long cellStart = (long) d1 * bound2;
+    for (int d2 = 0; d2 < bound2; d2 += 1) {
+      double energy = energies[energyStart + d2 * energyStep];
+      if (d1 == 0) {
+        weights[d2] = energy;
+        this.setCameFrom(cellStart + d2, (byte) 0);
+      }
+      else {
+        byte step = 0;
+        double best = prevWeights[d2];
+        if (d2 != 0 && prevWeights[d2 - 1] < best) {
+          step = -1;
+          best = prevWeights[d2 - 1];
+        }
+        if (d2 != bound2 - 1 && prevWeights[d2 + 1] < best) {
+          step = 1;
+          best = prevWeights[d2 + 1];
+        }
+        weights[d2] = best + energy;
+        this.setCameFrom(cellStart + d2, step);
+      }
+    }
+  }
+
+  // walks the lightest seam back from its end, given the total weights of the last d1
+  // EFFECT: modifies seamWeight
+  int[] traceSeam(int bound1, int bound2, double[] lastWeights) {
+    int[] seam = new int[bound1];
+    int end = 0;
+    for (int d2 = 1; d2 < bound2; d2 += 1) {
+      if (lastWeights[d2] < lastWeights[end]) {
+        end = d2;
+      }
+    }
+    this.seamWeight = lastWeights[end];
+    seam[bound1 - 1] = end;
+    for (int d1 = bound1 - 1; d1 > 0; d1 -= 1) {
+      seam[d1 - 1] = seam[d1] + this.cameFromAt((long) d1 * bound2 + seam[d1]);
+    }
+    return seam;
+  }
+
+  // removes the vertical seam going through the given column of every row
+  // EFFECT: shifts the pixels right of the seam in each row left by one, and reduces width by
+  // one
+  void removeVerticalSeam(int[] seam) {
+    int[] tail = new int[this.width];
+    for (int row = 0; row < this.height; row += 1) {
+      int col = seam[row];
+      this.readRow(row, tail, col + 1, this.width - col - 1);
+      this.writeRow(row, tail, col, this.width - col - 1);
+    }
+    this.width -= 1;
+  }
+
+  // removes the horizontal seam going through the given row of every column
+  // EFFECT: moves every pixel below the seam up by one row, sweeping down the rows once, and
+  // reduces height by one
+  void removeHorizontalSeam(int[] seam) {
+    int[] current = new int[this.width];
+    int[] next = new int[this.width];
+    this.readRow(0, current, 0, this.width);
+    for (int row = 0; row < this.height - 1; row += 1) {
+      this.readRow(row + 1, next, 0, this.width);
+      boolean changed = false;
+      for (int col = 0; col < this.width; col += 1) {
+        if (seam[col] <= row) {
+          current[col] = next[col];
+          changed = true;
+        }
+      }
+      if (changed) {
+        this.writeRow(row, current, 0, this.width);
+      }
+      int[] done = current;
+      current = next;
+      next = done;
+    }
+    this.height -= 1;
+  }
+
+  // finds and removes the seam with the least total weight in the given direction
+  // returns the total weight of the removed seam
+  // EFFECT: removes one column (if isVertical) or one row of pixels from this picture
+  double removeSeam(boolean isVertical) {
+    int[] seam = this.findSeam(isVertical);
+    if (isVertical) {
+      this.removeVerticalSeam(seam);
+    }
+    else {
+      this.removeHorizontalSeam(seam);
+    }
+    return this.seamWeight;
+  }
+
+  // closes this picture's files and deletes them. The picture can't be used afterwards. Java 11
+  // can't unmap a buffer on demand, only once it is garbage collected, and Windows won't delete a
+  // file that is still mapped, so there the files may only go away when the program exits
+  // throws an IOException if a file can't be closed
+  void close() throws IOException {
+    this.pixels.close();
+    this.cameFrom.close();
+    this.pixelTiles = null;
+    this.cameFromTiles = null;
+    this.pixelFile.delete();
+    this.cameFromFile.delete();
+  }
+}
+
+// Examples class for testing MappedPicture
+class ExamplesMappedPicture {
+
+  // tests that a MappedPicture holds the colors it was given
+  void testOf(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("mapped");
+    PixelRaster raster = PixelRaster.read("3by3img.jpg");
+    MappedPicture p = MappedPicture.of(raster, dir);
+
+    t.checkExpect(p.toArgb(), raster.argb);
+    t.checkExpect(p.rowsPerTile, 3);
+    t.checkExpect(p.pixelFile.length(), 36L);
+    int[] row = new int[2];
+    p.readRow(2, row, 1, 2);
+    t.checkExpect(row, new int[] { raster.argb[7], raster.argb[8] });
+    p.close();
+    // Windows keeps the file until its buffers are garbage collected
+    if (!System.getProperty("os.name").startsWith("Windows")) {
+      t.checkExpect(p.pixelFile.exists(), false);
+    }
+    this.delete(dir);
+  }
+
+  // deletes the given temporary directory and every file in it
+  // EFFECT: deletes the files
+  void delete(Path dir) {
+    for (File file : dir.toFile().listFiles()) {
+      file.delete();
+    }
+    dir.toFile().delete();
+  }
+
+  // tests reading an image into a MappedPicture and writing it back out a few rows at a time
+  void testReadAndWrite(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("mapped");
+    PixelRaster raster = PixelRaster.read("balloons.jpg");
+    // bands of 50 rows
+    MappedPicture p = MappedPicture.read("balloons.jpg", dir, 4 * 800 * 50);
+    t.checkExpect(p.width, 800);
+    t.checkExpect(p.height, 343);
+    t.checkExpect(p.toArgb(), raster.argb);
+
+    p.removeSeam(true);
+    File out = new File(dir.toFile(), "carved.tif");
+    p.write(out.getPath(), 4 * 799 * 30);
+    PixelRaster written = PixelRaster.read(out.getPath());
+    t.checkExpect(written.width, 799);
+    t.checkExpect(written.height, 343);
+    t.checkExpect(written.argb, p.toArgb());
+
+    String message = "";
+    try {
+      p.write(new File(dir.toFile(), "carved.png").getPath(), MappedPicture.BAND_BYTES);
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "no writer for image format png that writes in bands");
+    message = "";
+    try {
+      MappedPicture.read("missing.jpg", dir, MappedPicture.BAND_BYTES);
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "can't open image file missing.jpg");
+    p.close();
+
+    // an image that can't be decoded leaves no files behind
+    File broken = new File(dir.toFile(), "broken.png");
+    HeadlessCarver.write(raster.argb, 800, 343, broken.getPath());
+    byte[] bytes = Files.readAllBytes(broken.toPath());
+    Arrays.fill(bytes, 100, bytes.length, (byte) 0x5A);
+    Files.write(broken.toPath(), bytes);
+    message = "";
+    try {
+      MappedPicture.read(broken.getPath(), dir, MappedPicture.BAND_BYTES);
+    }
+    catch (IOException e) {
+      message = "failed";
+    }
+    t.checkExpect(message, "failed");
+    t.checkExpect(dir.toFile().list().length, 2);
+    this.delete(dir);
+  }
+
+  // tests that seams are found and removed exactly like a PackedPicture does, with rows spread
+  // over many tiles and horizontal seams found a few columns at a time
+  void testRemoveSeam(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("mapped");
+    PixelRaster raster = PixelRaster.read("balloons.jpg");
+    PackedPicture packed = new PackedPicture(raster.argb.clone(), raster.width, raster.height);
+    MappedPicture mapped = new MappedPicture(dir, raster.width, raster.height, 4 * 4096,
+        8 * 343 * 7);
+    t.checkExpect(mapped.rowsPerTile, 5);
+    t.checkExpect(mapped.pixelTiles.length, 69);
+    int[] row = new int[raster.width];
+    for (int r = 0; r < raster.height; r += 1) {
+      System.arraycopy(raster.argb, r * raster.width, row, 0, raster.width);
+      mapped.writeRow(r, row, 0, raster.width);
+    }
+
+    t.checkExpect(mapped.findSeam(true), packed.findSeam(true));
+    t.checkExpect(mapped.findSeam(false), packed.findSeam(false));
+    t.checkInexact(mapped.seamWeight, packed.seamWeight(packed.findSeam(false), false),
+        0.000001);
+    for (int i = 0; i < 4; i += 1) {
+      boolean isVertical = i % 2 == 1;
+      mapped.removeSeam(isVertical);
+      packed.removeSeam(isVertical);
+    }
+    t.checkExpect(mapped.width, 798);
+    t.checkExpect(mapped.height, 341);
+    t.checkExpect(mapped.toArgb(), packed.toArgb());
+    mapped.close();
+    this.delete(dir);
+  }
+}
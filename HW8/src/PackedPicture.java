@@ -0,0 +1,689 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+import tester.*;
+import javalib.worldimages.*;
+
+// Represents a picture being compressed, stored as packed ARGB rows instead of a grid of linked
+// Pixels. Row r of the image lives in pixels[rowStart[r]] .. pixels[rowStart[r] + width - 1],
+// inside the band of pixels that held the whole row when it was loaded: removing a seam moves
+// whichever side of it is shorter, so a row's start can move right within its band.
+class PackedPicture {
+  int[] pixels; // the ARGB color of every pixel, row after row
+  int[] rowStart; // the index in pixels of the leftmost remaining pixel of each row
+  int width; // width of the image in pixels
+  int height; // height of the image in pixels
+  double[] energies; // the energy of every pixel, densely packed. Reused between seams
+  double[] weights; // the total weight of the best seam ending at every pixel, laid out like
+  // energies. Reused between seams
+  double[] brightness; // the brightness of every pixel, row after row, inside a border of black
+  // pixels all the way around, so the energy kernel never checks for the edges. Each row is
+  // width + 2 long. Reused between seams
+  TransposedPlanes transposed; // the brightness and energies laid out column after column, for
+  // finding horizontal seams. Kept up to date as horizontal seams are removed
+
+  // Constructs a PackedPicture from the given ARGB colors, listed row after row
+  PackedPicture(int[] argb, int width, int height) {
+    this.pixels = argb;
+    this.width = width;
+    this.height = height;
+    this.rowStart = new int[height];
+    for (int row = 0; row < height; row += 1) {
+      this.rowStart[row] = row * width;
+    }
+    this.energies = new double[width * height];
+    this.weights = new double[width * height];
+    this.brightness = new double[(width + 2) * (height + 2)];
+    this.transposed = new TransposedPlanes();
+  }
+
+  // Constructs a PackedPicture from the given image
+  PackedPicture(FromFileImage img) {
+    this(PackedPicture.readPixels(img), (int) img.getWidth(), (int) img.getHeight());
+  }
+
+  // Constructs a PackedPicture from the colors of the given raster
+  PackedPicture(PixelRaster raster) {
+    this(raster.argb, raster.width, raster.height);
+  }
+
+  // Constructs a PackedPicture from the image in the given file
+  PackedPicture(String imgFileName) {
+    this(PixelRaster.read(imgFileName));
+  }
+
+  // Constructs a copy of the given PackedPicture, with its rows packed next to each other. The
+  // copy shares energies, weights and brightness with the given picture, since they are only
+  // used while a seam is being found, so the two must not look for seams at the same time. It
+  // shares transposed too, which only the picture that last filled it in can use
+  PackedPicture(PackedPicture other) {
+    this.pixels = other.toArgb();
+    this.width = other.width;
+    this.height = other.height;
+    this.rowStart = new int[other.height];
+    for (int row = 0; row < other.height; row += 1) {
+      this.rowStart[row] = row * other.width;
+    }
+    this.energies = other.energies;
+    this.weights = other.weights;
+    this.brightness = other.brightness;
+    this.transposed = other.transposed;
+  }
+
+  // a PackedPicture of the given ARGB colors, listed row after row, shrunk by the given factor
+  // in each direction. Each of its pixels is the average color of a square of factor by factor
+  // pixels; pixels past the last whole square are left out
+  static PackedPicture scaledDown(int[] argb, int width, int height, int factor) {
+    int smallWidth = Math.max(1, width / factor);
+    int smallHeight = Math.max(1, height / factor);
+    int blockWidth = Math.min(factor, width);
+    int blockHeight = Math.min(factor, height);
+    int[] small = new int[smallWidth * smallHeight];
+    for (int row = 0; row < smallHeight; row += 1) {
+      for (int col = 0; col < smallWidth; col += 1) {
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        for (int dy = 0; dy < blockHeight; dy += 1) {
+          for (int dx = 0; dx < blockWidth; dx += 1) {
+            int color = argb[(row * blockHeight + dy) * width + col * blockWidth + dx];
+            red += (color >> 16) & 0xFF;
+            green += (color >> 8) & 0xFF;
+            blue += color & 0xFF;
+          }
+        }
+        int count = blockWidth * blockHeight;
+        small[row * smallWidth + col] = 0xFF000000 | (red / count) << 16 | (green / count) << 8
+            | blue / count;
+      }
+    }
+    return new PackedPicture(small, smallWidth, smallHeight);
+  }
+
+  // reads the ARGB color of every pixel in the given image, row after row
+  static int[] readPixels(FromFileImage img) {
+    int width = (int) img.getWidth();
+    int height = (int) img.getHeight();
+    int[] argb = new int[width * height];
+    for (int row = 0; row < height; row += 1) {
+      for (int col = 0; col < width; col += 1) {
+        argb[row * width + col] = img.getColorAt(col, row).getRGB();
+      }
+    }
+    return argb;
+  }
+
+  // the ARGB color of the pixel at the given column and row
+  int colorAt(int col, int row) {
+    return this.pixels[this.rowStart[row] + col];
+  }
+
+  // copies the ARGB colors of this picture into a new array, row after row, with no gaps
+  // between rows
+  int[] toArgb() {
+    int[] argb = new int[this.width * this.height];
+    for (int row = 0; row < this.height; row += 1) {
+      System.arraycopy(this.pixels, this.rowStart[row], argb, row * this.width, this.width);
+    }
+    return argb;
+  }
+
+  // Calculates the brightness of the pixel at the given column and row. Positions off the edge
+  // of the image are black, like the SentinelPixels around a Picture
+  double brightnessAt(int col, int row) {
+    if (col < 0 || col >= this.width || row < 0 || row >= this.height) {
+      return 0.0;
+    }
+    int argb = this.colorAt(col, row);
+    return ((double) (((argb >> 16) & 0xFF) + ((argb >> 8) & 0xFF) + (argb & 0xFF))) / 3
+        / 255.0;
+  }
+
+  // Calculates the horizontal energy of the pixel at the given column and row
+  double horizEnergyAt(int col, int row) {
+    return (this.brightnessAt(col - 1, row - 1) + 2 * this.brightnessAt(col - 1, row)
+        + this.brightnessAt(col - 1, row + 1))
+        - (this.brightnessAt(col + 1, row - 1) + 2 * this.brightnessAt(col + 1, row)
+            + this.brightnessAt(col + 1, row + 1));
+  }
+
+  // Calculates the vertical energy of the pixel at the given column and row
+  double vertEnergyAt(int col, int row) {
+    return (this.brightnessAt(col - 1, row - 1) + 2 * this.brightnessAt(col, row - 1)
+        + this.brightnessAt(col + 1, row - 1))
+        - (this.brightnessAt(col - 1, row + 1) + 2 * this.brightnessAt(col, row + 1)
+            + this.brightnessAt(col + 1, row + 1));
+  }
+
+  // Calculates the overall energy of the pixel at the given column and row
+  double energyAt(int col, int row) {
+    return Math.sqrt(
+        Math.pow(this.horizEnergyAt(col, row), 2) + Math.pow(this.vertEnergyAt(col, row), 2));
+  }
+
+  // fills energies with the energy of every pixel in this picture, a row at a time from the
+  // brightness plane
+  // EFFECT: modifies brightness, and modifies energies so that energies[row * width + col] is the
+  // energy at (col, row)
+  void updateEnergies() {
+    this.updateBrightness();
+    for (int row = 0; row < this.height; row += 1) {
+      this.rowEnergies(row);
+    }
+  }
+
+  // fills the brightness plane from the colors of this picture, with a black border around it
+  // EFFECT: modifies brightness, growing it if needed
+  void updateBrightness() {
+    int planeWidth = this.width + 2;
+    int planeSize = planeWidth * (this.height + 2);
+    if (this.brightness == null || this.brightness.length < planeSize) {
+      this.brightness = new double[planeSize];
+    }
+    Arrays.fill(this.brightness, 0, planeWidth, 0);
+    Arrays.fill(this.brightness, planeSize - planeWidth, planeSize, 0);
+    for (int row = 0; row < this.height; row += 1) {
+      int from = this.rowStart[row];
+      int to = (row + 1) * planeWidth + 1;
+      this.brightness[to - 1] = 0;
+      this.brightness[to + this.width] = 0;
+      for (int col = 0; col < this.width; col += 1) {
+        int argb = this.pixels[from + col];
+        this.brightness[to + col] = ((double) (((argb >> 16) & 0xFF) + ((argb >> 8) & 0xFF)
+            + (argb & 0xFF))) / 3 / 255.0;
+      }
+    }
+  }
+
+  // calculates the energy of every pixel in the given row from the brightness plane, adding up
+  // the same terms in the same order as energyAt. The loop reads three rows of a flat array with
+  // no branches and no calls but Math.sqrt, so the JIT can unroll and vectorize it
+  // EFFECT: modifies the given row of energies
+  void rowEnergies(int row) {
+    double[] plane = this.brightness;
+    int planeWidth = this.width + 2;
+    int middle = (row + 1) * planeWidth + 1;
+    int above = middle - planeWidth;
+    int below = middle + planeWidth;
+    int out = row * this.width;
+    for (int col = 0; col < this.width; col += 1) {
+      double horiz = (plane[above + col - 1] + 2 * plane[middle + col - 1]
+          + plane[below + col - 1])
+          - (plane[above + col + 1] + 2 * plane[middle + col + 1] + plane[below + col + 1]);
+      double vert = (plane[above + col - 1] + 2 * plane[above + col] + plane[above + col + 1])
+          - (plane[below + col - 1] + 2 * plane[below + col] + plane[below + col + 1]);
+      this.energies[out + col] = Math.sqrt(horiz * horiz + vert * vert);
+    }
+  }
+
+  // finds the seam with the least total weight, exactly like Picture.updateSeams does. For a
+  // vertical seam, the result holds the column of the seam's pixel in each row; for a
+  // horizontal seam, it holds the row of the seam's pixel in each column. Horizontal seams are
+  // found on the transposed planes, so both directions walk along memory the same way
+  // EFFECT: modifies energies (or transposed) and weights to describe the current image
+  int[] findSeam(boolean isVertical) {
+    // d1 walks along the seam and d2 across it, like in Picture.updateSeams. step1 is how far
+    // apart consecutive d1s are in plane and weights; consecutive d2s are next to each other
+    double[] plane;
+    int bound1;
+    int bound2;
+    int step1;
+    int step2 = 1;
+    if (isVertical) {
+      this.updateEnergies();
+      plane = this.energies;
+      bound1 = this.height;
+      bound2 = this.width;
+      step1 = this.width;
+    }
+    else {
+      this.updateTransposed();
+      plane = this.transposed.energies;
+      bound1 = this.width;
+      bound2 = this.height;
+      step1 = this.transposed.stride;
+    }
+
+    for (int d2 = 0; d2 < bound2; d2 += 1) {
+      this.weights[d2 * step2] = plane[d2 * step2];
+    }
+    for (int d1 = 1; d1 < bound1; d1 += 1) {
+      for (int d2 = 0; d2 < bound2; d2 += 1) {
+        int cameFrom = this.bestCameFrom((d1 - 1) * step1 + d2 * step2, d2, bound2, step2);
+        int here = d1 * step1 + d2 * step2;
+        this.weights[here] = this.weights[cameFrom] + plane[here];
+      }
+    }
+
+    // finds the end of the seam with the least total weight, then walks it back to the start
+    int[] seam = new int[bound1];
+    int last = (bound1 - 1) * step1;
+    for (int d2 = 1; d2 < bound2; d2 += 1) {
+      if (this.weights[(bound1 - 1) * step1 + d2 * step2] < this.weights[last]) {
+        last = (bound1 - 1) * step1 + d2 * step2;
+        seam[bound1 - 1] = d2;
+      }
+    }
+    for (int d1 = bound1 - 1; d1 > 0; d1 -= 1) {
+      int d2 = seam[d1];
+      int cameFrom = this.bestCameFrom((d1 - 1) * step1 + d2 * step2, d2, bound2, step2);
+      seam[d1 - 1] = d2 + (cameFrom - ((d1 - 1) * step1 + d2 * step2)) / step2;
+    }
+    return seam;
+  }
+
+  // the total weight of the given seam, just after findSeam found it in the given direction
+  double seamWeight(int[] seam, boolean isVertical) {
+    if (isVertical) {
+      return this.weights[(this.height - 1) * this.width + seam[this.height - 1]];
+    }
+    else {
+      return this.weights[(this.width - 1) * this.transposed.stride + seam[this.width - 1]];
+    }
+  }
+
+  // the index in weights of the lightest of the (up to) three cells a seam could come from,
+  // given the cell straight before it. Ties go the same way as in Picture.updateSeams
+  int bestCameFrom(int straight, int d2, int bound2, int step2) {
+    int cameFrom = straight;
+    if (d2 != 0 && this.weights[straight - step2] < this.weights[cameFrom]) {
+      cameFrom = straight - step2;
+    }
+    if (d2 != bound2 - 1 && this.weights[straight + step2] < this.weights[cameFrom]) {
+      cameFrom = straight + step2;
+    }
+    return cameFrom;
+  }
+
+  // removes the vertical seam going through the given column of every row
+  // EFFECT: closes the gap left by each removed pixel by shifting whichever side of its row is
+  // shorter, reduces width by one, and leaves the transposed planes to be filled in again
+  void removeVerticalSeam(int[] seam) {
+    if (this.transposed.owner == this) {
+      this.transposed.owner = null;
+    }
+    for (int row = 0; row < this.height; row += 1) {
+      int start = this.rowStart[row];
+      int col = seam[row];
+      if (col < this.width / 2) {
+        System.arraycopy(this.pixels, start, this.pixels, start + 1, col);
+        this.rowStart[row] += 1;
+      }
+      else {
+        System.arraycopy(this.pixels, start + col + 1, this.pixels, start + col,
+            this.width - col - 1);
+      }
+    }
+    this.width -= 1;
+  }
+
+  // removes the horizontal seam going through the given row of every column
+  // EFFECT: moves every pixel below the seam up by one row, sweeping down the rows once, and
+  // reduces height by one. If this picture's transposed planes are up to date, they are kept
+  // that way
+  void removeHorizontalSeam(int[] seam) {
+    int top = this.height;
+    for (int col = 0; col < this.width; col += 1) {
+      top = Math.min(top, seam[col]);
+    }
+    for (int row = top; row < this.height - 1; row += 1) {
+      int here = this.rowStart[row];
+      int below = this.rowStart[row + 1];
+      for (int col = 0; col < this.width; col += 1) {
+        if (seam[col] <= row) {
+          this.pixels[here + col] = this.pixels[below + col];
+        }
+      }
+    }
+    this.height -= 1;
+    if (this.transposed.owner == this) {
+      this.removeTransposedSeam(seam);
+    }
+  }
+
+  // removes the given horizontal seam from the transposed planes, then recalculates the energies
+  // of the pixels whose neighbours it changed: in each column, those from one row above the
+  // highest seam pixel in it or the columns beside it, down to the lowest
+  // EFFECT: modifies transposed, whose columns are one pixel longer than height
+  void removeTransposedSeam(int[] seam) {
+    double[] brightness = this.transposed.brightness;
+    double[] energies = this.transposed.energies;
+    int stride = this.transposed.stride;
+    for (int col = 0; col < this.width; col += 1) {
+      // the column's bottom border moves up with the pixels above it
+      int band = (col + 1) * (stride + 2);
+      System.arraycopy(brightness, band + seam[col] + 2, brightness, band + seam[col] + 1,
+          this.height + 1 - seam[col]);
+      System.arraycopy(energies, col * stride + seam[col] + 1, energies, col * stride + seam[col],
+          this.height - seam[col]);
+    }
+    for (int col = 0; col < this.width; col += 1) {
+      int low = seam[col];
+      int high = seam[col];
+      if (col > 0) {
+        low = Math.min(low, seam[col - 1]);
+        high = Math.max(high, seam[col - 1]);
+      }
+      if (col < this.width - 1) {
+        low = Math.min(low, seam[col + 1]);
+        high = Math.max(high, seam[col + 1]);
+      }
+      this.columnEnergies(col, Math.max(0, low - 1), Math.min(this.height - 1, high));
+    }
+  }
+
+  // fills in the transposed planes from the colors of this picture, unless this picture filled
+  // them in last and has kept them up to date since. The brightness plane is transposed in
+  // square blocks, so both the rows read and the columns written stay in the cache
+  // EFFECT: modifies brightness and transposed, growing their arrays if needed
+  void updateTransposed() {
+    TransposedPlanes planes = this.transposed;
+    if (planes.owner == this) {
+      return;
+    }
+    this.updateBrightness();
+    int planeWidth = this.width + 2;
+    int planeHeight = this.height + 2;
+    if (planes.brightness == null || planes.brightness.length < planeWidth * planeHeight) {
+      planes.brightness = new double[planeWidth * planeHeight];
+    }
+    if (planes.energies == null || planes.energies.length < this.width * this.height) {
+      planes.energies = new double[this.width * this.height];
+    }
+    planes.stride = this.height;
+    for (int rowBlock = 0; rowBlock < planeHeight; rowBlock += TransposedPlanes.BLOCK) {
+      int rowEnd = Math.min(planeHeight, rowBlock + TransposedPlanes.BLOCK);
+      for (int colBlock = 0; colBlock < planeWidth; colBlock += TransposedPlanes.BLOCK) {
+        int colEnd = Math.min(planeWidth, colBlock + TransposedPlanes.BLOCK);
+        for (int row = rowBlock; row < rowEnd; row += 1) {
+          for (int col = colBlock; col < colEnd; col += 1) {
+            planes.brightness[col * planeHeight + row] = this.brightness[row * planeWidth + col];
+          }
+        }
+      }
+    }
+    for (int col = 0; col < this.width; col += 1) {
+      this.columnEnergies(col, 0, this.height - 1);
+    }
+    planes.owner = this;
+  }
+
+  // calculates the energies of the pixels in the given column from the given row to the given
+  // row (inclusive) from the transposed brightness plane, adding up the same terms in the same
+  // order as rowEnergies
+  // EFFECT: modifies transposed's energies
+  void columnEnergies(int col, int fromRow, int toRow) {
+    double[] plane = this.transposed.brightness;
+    int bandHeight = this.transposed.stride + 2;
+    int left = col * bandHeight + 1;
+    int middle = left + bandHeight;
+    int right = middle + bandHeight;
+    int out = col * this.transposed.stride;
+    for (int row = fromRow; row <= toRow; row += 1) {
+      double horiz = (plane[left + row - 1] + 2 * plane[left + row] + plane[left + row + 1])
+          - (plane[right + row - 1] + 2 * plane[right + row] + plane[right + row + 1]);
+      double vert = (plane[left + row - 1] + 2 * plane[middle + row - 1]
+          + plane[right + row - 1])
+          - (plane[left + row + 1] + 2 * plane[middle + row + 1] + plane[right + row + 1]);
+      this.transposed.energies[out + row] = Math.sqrt(horiz * horiz + vert * vert);
+    }
+  }
+
+  // finds and removes the seam with the least total weight in the given direction
+  // EFFECT: removes one column (if isVertical) or one row of pixels from this picture
+  void removeSeam(boolean isVertical) {
+    int[] seam = this.findSeam(isVertical);
+    if (isVertical) {
+      this.removeVerticalSeam(seam);
+    }
+    else {
+      this.removeHorizontalSeam(seam);
+    }
+  }
+}
+
+// Represents the brightness and energy planes of a PackedPicture laid out column after column,
+// so horizontal seams are found walking along memory just like vertical seams are. Shared
+// between a picture and its copies like their energies and weights, so only the picture that
+// filled it in last, its owner, may use what it holds
+class TransposedPlanes {
+  static final int BLOCK = 32; // the side of the square blocks the brightness plane is
+  // transposed in
+  double[] brightness; // the brightness of every pixel, column after column, inside a border of
+  // black pixels all the way around. Each column, borders included, is stride + 2 long
+  double[] energies; // the energy of every pixel, column after column, stride apart
+  int stride; // the height of the owner when it filled in these planes
+  PackedPicture owner; // the picture these planes describe, or null
+
+  // Constructs planes that describe no picture yet
+  TransposedPlanes() {
+    this.owner = null;
+  }
+}
+
+// Examples class for testing PackedPicture
+class ExamplesPackedPicture {
+  PackedPicture p3;
+  PackedPicture p6;
+
+  // Initializes conditions for testing
+  void initTestConditions() {
+    p3 = new PackedPicture("3by3img.jpg");
+    p6 = new PackedPicture("3by3img.jpg");
+  }
+
+  // tests that a PackedPicture holds the same colors as a Picture of the same image
+  void testConstructor(Tester t) {
+    this.initTestConditions();
+
+    t.checkExpect(p3.width, 3);
+    t.checkExpect(p3.height, 3);
+    t.checkExpect(p3.rowStart, new int[] { 0, 3, 6 });
+    t.checkExpect(new Color(p3.colorAt(0, 0)), new Color(10, 10, 10));
+    t.checkExpect(new Color(p3.colorAt(2, 0)), new Color(5, 5, 5));
+    t.checkExpect(new Color(p3.colorAt(0, 2)), new Color(100, 50, 0));
+    t.checkExpect(new Color(p3.colorAt(2, 2)), new Color(60, 60, 60));
+  }
+
+  // tests that energies match those computed on the linked grid of a Picture
+  void testEnergyAt(Tester t) {
+    this.initTestConditions();
+    Picture p = new Picture("3by3img.jpg");
+
+    t.checkInexact(p3.brightnessAt(-1, 0), 0.0, 0.001);
+    t.checkInexact(p3.brightnessAt(1, 3), 0.0, 0.001);
+    t.checkInexact(p3.brightnessAt(0, 2), 150.0 / 3 / 255, 0.001);
+
+    APixel rowStart = p.topLeft;
+    for (int row = 0; row < 3; row += 1) {
+      rowStart = rowStart.down;
+      APixel pixel = rowStart.right;
+      for (int col = 0; col < 3; col += 1) {
+        t.checkInexact(p3.horizEnergyAt(col, row), pixel.calculateHorizEnergy(), 0.000001);
+        t.checkInexact(p3.vertEnergyAt(col, row), pixel.calculateVertEnergy(), 0.000001);
+        t.checkInexact(p3.energyAt(col, row), pixel.calculateEnergy(), 0.000001);
+        pixel = pixel.right;
+      }
+    }
+  }
+
+  // tests that the row kernel gives the same energies as measuring each pixel on its own, and as
+  // a Picture
+  void testRowEnergies(Tester t) {
+    this.initTestConditions();
+    Picture p = new Picture("3by3img.jpg");
+
+    p3.updateEnergies();
+    t.checkExpect(p3.brightness.length, 25);
+    t.checkInexact(p3.brightness[6], 10.0 / 255, 0.000001);
+    t.checkInexact(p3.brightness[5], 0.0, 0.000001);
+    APixel rowStart = p.topLeft;
+    for (int row = 0; row < 3; row += 1) {
+      rowStart = rowStart.down;
+      APixel pixel = rowStart.right;
+      for (int col = 0; col < 3; col += 1) {
+        t.checkInexact(p3.energies[row * 3 + col], pixel.calculateEnergy(), 1e-9);
+        pixel = pixel.right;
+      }
+    }
+
+    // and after seams are removed, at every pixel of a real picture
+    PackedPicture balloons = new PackedPicture("balloons.jpg");
+    balloons.removeSeam(true);
+    balloons.removeSeam(false);
+    balloons.removeSeam(true);
+    balloons.updateEnergies();
+    int mismatches = 0;
+    for (int row = 0; row < balloons.height; row += 1) {
+      for (int col = 0; col < balloons.width; col += 1) {
+        if (Math.abs(balloons.energies[row * balloons.width + col]
+            - balloons.energyAt(col, row)) > 1e-9) {
+          mismatches += 1;
+        }
+      }
+    }
+    t.checkExpect(mismatches, 0);
+  }
+
+  // tests finding the least-weight seam in both directions
+  void testFindSeam(Tester t) {
+    this.initTestConditions();
+
+    t.checkExpect(p3.findSeam(true), new int[] { 2, 1, 1 });
+    t.checkInexact(p3.weights[2 * 3 + 1], 1.452838575, 0.001);
+    t.checkExpect(p6.findSeam(false), new int[] { 0, 0, 0 });
+    // horizontal seams are found column after column, so their weights are too
+    t.checkInexact(p6.weights[2 * 3 + 0], 1.2468494473, 0.001);
+    t.checkInexact(p6.seamWeight(new int[] { 0, 0, 0 }, false), 1.2468494473, 0.001);
+    t.checkInexact(p3.seamWeight(p3.findSeam(true), true), 1.452838575, 0.001);
+  }
+
+  // tests removing vertical and horizontal seams
+  void testRemoveSeam(Tester t) {
+    this.initTestConditions();
+
+    p3.removeVerticalSeam(new int[] { 2, 1, 1 });
+
+    t.checkExpect(p3.width, 2);
+    t.checkExpect(p3.rowStart, new int[] { 0, 3, 6 });
+    t.checkExpect(new Color(p3.colorAt(0, 0)), new Color(10, 10, 10));
+    t.checkExpect(new Color(p3.colorAt(1, 0)), new Color(15, 15, 15));
+    t.checkExpect(new Color(p3.colorAt(0, 1)), new Color(40, 40, 40));
+    t.checkExpect(new Color(p3.colorAt(1, 1)), new Color(30, 30, 30));
+    t.checkExpect(new Color(p3.colorAt(0, 2)), new Color(100, 50, 0));
+    t.checkExpect(new Color(p3.colorAt(1, 2)), new Color(60, 60, 60));
+
+    p3.removeVerticalSeam(new int[] { 0, 0, 1 });
+
+    t.checkExpect(p3.width, 1);
+    // rows whose seam pixel was on the left half shifted their start instead of their tail
+    t.checkExpect(p3.rowStart, new int[] { 1, 4, 6 });
+    t.checkExpect(p3.toArgb(), new int[] { new Color(15, 15, 15).getRGB(),
+        new Color(30, 30, 30).getRGB(), new Color(100, 50, 0).getRGB() });
+
+    p6.removeHorizontalSeam(new int[] { 0, 0, 0 });
+
+    t.checkExpect(p6.height, 2);
+    t.checkExpect(new Color(p6.colorAt(0, 0)), new Color(40, 40, 40));
+    t.checkExpect(new Color(p6.colorAt(1, 0)), new Color(20, 20, 20));
+    t.checkExpect(new Color(p6.colorAt(2, 0)), new Color(30, 30, 30));
+    t.checkExpect(new Color(p6.colorAt(0, 1)), new Color(100, 50, 0));
+    t.checkExpect(new Color(p6.colorAt(1, 1)), new Color(50, 50, 50));
+    t.checkExpect(new Color(p6.colorAt(2, 1)), new Color(60, 60, 60));
+  }
+
+  // tests that the transposed planes are filled in with the same energies as the rows, and kept
+  // up to date as horizontal seams are removed
+  void testTransposed(Tester t) {
+    this.initTestConditions();
+
+    p3.updateTransposed();
+    t.checkExpect(p3.transposed.owner == p3, true);
+    t.checkExpect(p3.transposed.stride, 3);
+    // the first column of the image, 10, 40 and 100/50/0 gray, inside its border
+    t.checkInexact(p3.transposed.brightness[5], 0.0, 0.000001);
+    t.checkInexact(p3.transposed.brightness[6], 10.0 / 255, 0.000001);
+    t.checkInexact(p3.transposed.brightness[7], 40.0 / 255, 0.000001);
+    p3.updateEnergies();
+    for (int row = 0; row < 3; row += 1) {
+      for (int col = 0; col < 3; col += 1) {
+        t.checkExpect(p3.transposed.energies[col * 3 + row], p3.energies[row * 3 + col]);
+      }
+    }
+
+    PackedPicture balloons = new PackedPicture("balloons.jpg");
+    for (int i = 0; i < 5; i += 1) {
+      balloons.removeSeam(false);
+    }
+    t.checkExpect(balloons.transposed.owner == balloons, true);
+    int mismatches = 0;
+    for (int row = 0; row < balloons.height; row += 1) {
+      for (int col = 0; col < balloons.width; col += 1) {
+        if (balloons.transposed.energies[col * balloons.transposed.stride + row]
+            != balloons.energyAt(col, row)) {
+          mismatches += 1;
+        }
+      }
+    }
+    t.checkExpect(mismatches, 0);
+    // a copy fills the planes in again from scratch, and finds the same seam
+    PackedPicture copy = new PackedPicture(balloons);
+    int[] seam = balloons.findSeam(false);
+    t.checkExpect(copy.findSeam(false), seam);
+    t.checkExpect(balloons.transposed.owner == copy, true);
+
+    balloons.removeSeam(true);
+    t.checkExpect(balloons.transposed.owner == copy, true);
+    copy.removeSeam(true);
+    t.checkExpect(copy.transposed.owner, null);
+  }
+
+  // tests copying and shrinking a PackedPicture
+  void testCopy(Tester t) {
+    this.initTestConditions();
+    p3.removeVerticalSeam(new int[] { 0, 0, 1 });
+    PackedPicture copy = new PackedPicture(p3);
+
+    t.checkExpect(copy.toArgb(), p3.toArgb());
+    t.checkExpect(copy.rowStart, new int[] { 0, 2, 4 });
+    t.checkExpect(copy.weights == p3.weights, true);
+    copy.removeVerticalSeam(new int[] { 0, 0, 0 });
+    t.checkExpect(p3.width, 2);
+
+    PackedPicture small = PackedPicture.scaledDown(p6.toArgb(), 3, 3, 2);
+    t.checkExpect(small.width, 1);
+    t.checkExpect(small.height, 1);
+    // the average of 10, 15, 40 and 20, from p6's first two rows and columns
+    t.checkExpect(new Color(small.colorAt(0, 0)), new Color(21, 21, 21));
+    t.checkExpect(PackedPicture.scaledDown(p6.toArgb(), 3, 3, 1).toArgb(), p6.toArgb());
+  }
+
+  // tests that carving a PackedPicture gives the same image as carving a Picture
+  void testMatchesPicture(Tester t) {
+    Picture p = new Picture("balloons.jpg");
+    PackedPicture packed = new PackedPicture("balloons.jpg");
+
+    for (int i = 0; i < 6; i += 1) {
+      boolean isVertical = i % 2 == 0;
+      p.isVertical = isVertical;
+      p.seamToRemove = null;
+      p.onTick();
+      p.removeSeam();
+      packed.removeSeam(isVertical);
+    }
+
+    t.checkExpect(packed.width, p.width);
+    t.checkExpect(packed.height, p.height);
+    boolean same = true;
+    APixel rowStart = p.topLeft;
+    for (int row = 0; row < p.height; row += 1) {
+      rowStart = rowStart.down;
+      APixel pixel = rowStart.right;
+      for (int col = 0; col < p.width; col += 1) {
+        same = same && pixel.color.getRGB() == packed.colorAt(col, row);
+        pixel = pixel.right;
+      }
+    }
+    t.checkExpect(same, true);
+  }
+}
@@ -0,0 +1,75 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import tester.*;
+import javalib.worldimages.*;
+
+// Represents the colors of an image, packed as ARGB ints row after row. An image file is
+// decoded once and its colors copied out in bulk, instead of asking for a Color one pixel at a
+// time, and the decoded image can be thrown away as soon as the colors are out
+class PixelRaster {
+  int[] argb; // the ARGB color of every pixel, row after row
+  int width; // width of the image in pixels
+  int height; // height of the image in pixels
+
+  // the constructor
+  PixelRaster(int[] argb, int width, int height) {
+    this.argb = argb;
+    this.width = width;
+    this.height = height;
+  }
+
+  // decodes the image in the given file into a raster
+  // throws a RuntimeException if the file can't be read as an image, like FromFileImage
+  static PixelRaster read(String imgFileName) {
+    BufferedImage img;
+    try {
+      img = ImageIO.read(new File(imgFileName));
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    if (img == null) {
+      throw new RuntimeException("no reader for image file " + imgFileName);
+    }
+    int width = img.getWidth();
+    int height = img.getHeight();
+    return new PixelRaster(img.getRGB(0, 0, width, height, null, 0, width), width, height);
+  }
+}
+
+// Examples class for testing PixelRaster
+class ExamplesPixelRaster {
+
+  // tests reading an image file into a raster
+  void testRead(Tester t) {
+    PixelRaster small = PixelRaster.read("3by3img.jpg");
+    t.checkExpect(small.width, 3);
+    t.checkExpect(small.height, 3);
+    t.checkExpect(new Color(small.argb[0]), new Color(10, 10, 10));
+    t.checkExpect(new Color(small.argb[2 * 3]), new Color(100, 50, 0));
+
+    // every color matches the one FromFileImage gives for the same pixel
+    PixelRaster raster = PixelRaster.read("balloons.jpg");
+    FromFileImage img = new FromFileImage("balloons.jpg");
+    t.checkExpect(raster.width, (int) img.getWidth());
+    t.checkExpect(raster.height, (int) img.getHeight());
+    int mismatches = 0;
+    for (int row = 0; row < raster.height; row += 1) {
+      for (int col = 0; col < raster.width; col += 1) {
+        if (raster.argb[row * raster.width + col] != img.getColorAt(col, row).getRGB()) {
+          mismatches += 1;
+        }
+      }
+    }
+    t.checkExpect(mismatches, 0);
+
+    // a picture built from a raster holds the same colors
+    Picture p = new Picture(raster, new java.util.Random(1));
+    t.checkExpect(p.toArgb(), raster.argb);
+  }
+}
@@ -0,0 +1,720 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tester.*;
+
+// represents a way of finding the seam with the least total weight in a Picture, in the
+// direction the Picture is currently removing seams
+interface ISeamFinder {
+  // finds the lightest seam in the given picture, as a chain of SeamInfos from its last pixel
+  // back to its first
+  SeamInfo findSeam(Picture p);
+
+  // the d2 at every d1 of the seam this finder found last
+  int[] lastPath();
+}
+
+// finds seams by filling in a SeamInfo for every pixel of the picture, using the picture's
+// (possibly kept) seam table
+class TableSeamFinder implements ISeamFinder {
+  int[] path; // the d2 at every d1 of the last seam found
+
+  // finds the lightest seam in the given picture, as a chain of SeamInfos from its last pixel
+  // back to its first
+  public SeamInfo findSeam(Picture p) {
+    ArrayList<ArrayList<SeamInfo>> seams = p.currentSeams();
+    long startNanos = p.metrics.startNanos();
+    long startBytes = p.metrics.startBytes();
+
+    // finds the SeamInfo in the bottom row or rightmost column with the least total
+    // weight
+    ArrayList<SeamInfo> lastRow = seams.get(seams.size() - 1);
+    SeamInfo seam = lastRow.get(0);
+    for (int d2 = 1; d2 < lastRow.size(); d2 += 1) {
+      if (lastRow.get(d2).totalWeight < seam.totalWeight) {
+        seam = lastRow.get(d2);
+      }
+    }
+    this.path = p.pathIn(seams, seam);
+    p.metrics.record("backtrace", startNanos, startBytes, seams.size());
+    return seam;
+  }
+
+  // the d2 at every d1 of the seam this finder found last
+  public int[] lastPath() {
+    return this.path;
+  }
+}
+
+// finds seams without allocating anything per pixel: total weights are kept for only two rows
+// at a time, and the choice each pixel made is remembered as a byte (-1, 0 or 1 for the
+// previous d2, the same d2, or the next d2). The arrays are reused from one seam to the next,
+// and SeamInfos are only built for the pixels of the seam that is asked for
+class RollingSeamFinder implements ISeamFinder {
+  double[] prevWeights; // the total weights of the previous d1
+  double[] weights; // the total weights of the current d1
+  byte[] cameFrom; // which way the best seam through each pixel came from, d1 after d1
+  APixel[] cells; // every pixel in the picture, d1 after d1
+  int[] path; // the d2 of the lightest seam at every d1
+  int bound1; // the length of the last seam found
+  int bound2; // the number of seams to choose from in the last search
+  IEnergyFunction energyFunction; // how the picture searched last measures energy
+  boolean isVertical; // the direction of the last search
+  BiasMask mask; // the mask of the picture searched last, or null
+
+  // the d2 of the lightest seam at every d1 of the given picture, in its current direction, in
+  // the first bound1 entries of path. Ties go the same way as in Picture.updateSeams
+  // EFFECT: fills this finder's arrays to describe the given picture, growing them if needed
+  int[] findPath(Picture p) {
+    if (p.isVertical) {
+      this.bound1 = p.height;
+      this.bound2 = p.width;
+    }
+    else {
+      this.bound1 = p.width;
+      this.bound2 = p.height;
+    }
+    this.ensureCapacity();
+    this.energyFunction = p.energyFunction;
+    this.isVertical = p.isVertical;
+    this.mask = p.mask;
+    p.updateEnergies();
+
+    long startNanos = p.metrics.startNanos();
+    long startBytes = p.metrics.startBytes();
+    APixel nextD1Pixel = p.topLeft;
+    for (int d1 = 0; d1 < this.bound1; d1 += 1) {
+      APixel nextPixel;
+      if (p.isVertical) {
+        nextD1Pixel = nextD1Pixel.down;
+        nextPixel = nextD1Pixel.right;
+      }
+      else {
+        nextD1Pixel = nextD1Pixel.right;
+        nextPixel = nextD1Pixel.down;
+      }
+      for (int d2 = 0; d2 < this.bound2; d2 += 1) {
+        this.cells[d1 * this.bound2 + d2] = nextPixel;
+        if (p.isVertical) {
+          nextPixel = nextPixel.right;
+        }
+        else {
+          nextPixel = nextPixel.down;
+        }
+      }
+      this.relaxD1(d1);
+
+      double[] done = this.prevWeights;
+      this.prevWeights = this.weights;
+      this.weights = done;
+    }
+    p.metrics.record("dp", startNanos, startBytes, (long) this.bound1 * this.bound2);
+
+    startNanos = p.metrics.startNanos();
+    startBytes = p.metrics.startBytes();
+    this.tracePath();
+    p.metrics.record("backtrace", startNanos, startBytes, this.bound1);
+    return this.path;
+  }
+
+  // fills in the total weights and choices of every d2 in the given d1, from the total weights
+  // of the previous d1
+  // EFFECT: modifies weights and cameFrom
+  void relaxD1(int d1) {
+    this.relaxRow(d1, 0, this.bound2);
+  }
+
+  // fills in the total weights and choices of the d2s from low up to (not including) high in
+  // the given d1, from the total weights of the previous d1
+  // EFFECT: modifies weights and cameFrom
+  void relaxRow(int d1, int low, int high) {
+    int rowStart = d1 * this.bound2;
+    boolean hasStepCosts = this.energyFunction.hasStepCosts();
+    for (int d2 = low; d2 < high; d2 += 1) {
+      APixel cell = this.cells[rowStart + d2];
+      double energy = cell.energy(this.energyFunction, this.isVertical);
+      if (this.mask != null) {
+        energy += this.mask.biasAt(d1, d2, this.isVertical);
+      }
+      if (d1 == 0) {
+        this.weights[d2] = energy;
+        this.cameFrom[rowStart + d2] = 0;
+      }
+      else if (hasStepCosts) {
+        byte step = 0;
+        double best = this.prevWeights[d2] + this.energyFunction.stepCost(cell, 0, this.isVertical);
+        if (d2 != 0) {
+          double left = this.prevWeights[d2 - 1]
+              + this.energyFunction.stepCost(cell, -1, this.isVertical);
+          if (left < best) {
+            step = -1;
+            best = left;
+          }
+        }
+        if (d2 != this.bound2 - 1) {
+          double right = this.prevWeights[d2 + 1]
+              + this.energyFunction.stepCost(cell, 1, this.isVertical);
+          if (right < best) {
+            step = 1;
+            best = right;
+          }
+        }
+        this.weights[d2] = best + energy;
+        this.cameFrom[rowStart + d2] = step;
+      }
+      else {
+        byte step = 0;
+        double best = this.prevWeights[d2];
+        if (d2 != 0 && this.prevWeights[d2 - 1] < best) {
+          step = -1;
+          best = this.prevWeights[d2 - 1];
+        }
+        if (d2 != this.bound2 - 1 && this.prevWeights[d2 + 1] < best) {
+          step = 1;
+          best = this.prevWeights[d2 + 1];
+        }
+        this.weights[d2] = best + energy;
+        this.cameFrom[rowStart + d2] = step;
+      }
+    }
+  }
+
+  // walks the lightest seam back from its end, once the total weights of the last d1 are in
+  // prevWeights
+  // EFFECT: fills path with the d2 of the seam at every d1
+  int[] tracePath() {
+    int end = 0;
+    for (int d2 = 1; d2 < this.bound2; d2 += 1) {
+      if (this.prevWeights[d2] < this.prevWeights[end]) {
+        end = d2;
+      }
+    }
+    this.path[this.bound1 - 1] = end;
+    for (int d1 = this.bound1 - 1; d1 > 0; d1 -= 1) {
+      this.path[d1 - 1] = this.path[d1] + this.cameFrom[d1 * this.bound2 + this.path[d1]];
+    }
+    return this.path;
+  }
+
+  // makes sure this finder's arrays can describe a picture with the current bounds. Pictures
+  // only get smaller while seams are removed, so this allocates once per picture unless seams
+  // are added
+  // EFFECT: replaces any array that is too small
+  void ensureCapacity() {
+    int longest = Math.max(this.bound1, this.bound2);
+    if (this.weights == null || this.weights.length < longest) {
+      this.prevWeights = new double[longest];
+      this.weights = new double[longest];
+      this.path = new int[longest];
+    }
+    if (this.cells == null || this.cells.length < this.bound1 * this.bound2) {
+      this.cameFrom = new byte[this.bound1 * this.bound2];
+      this.cells = new APixel[this.bound1 * this.bound2];
+    }
+  }
+
+  // finds the lightest seam in the given picture, as a chain of SeamInfos from its last pixel
+  // back to its first
+  public SeamInfo findSeam(Picture p) {
+    this.findPath(p);
+    return this.seamInfo();
+  }
+
+  // finds up to k of the lightest seams in the given picture that share no pixels, lightest
+  // first, all from one search. Seams traced back through cameFrom join once they touch and
+  // never cross, so seams that share no pixels can be removed one after another
+  ArrayList<SeamInfo> findSeams(Picture p, int k) {
+    this.findPath(p);
+    long startNanos = p.metrics.startNanos();
+    long startBytes = p.metrics.startBytes();
+    ArrayList<Integer> ends = new ArrayList<Integer>();
+    for (int d2 = 0; d2 < this.bound2; d2 += 1) {
+      ends.add(d2);
+    }
+    ends.sort((end1, end2) -> Double.compare(this.prevWeights[end1], this.prevWeights[end2]));
+
+    boolean[] taken = new boolean[this.bound1 * this.bound2];
+    ArrayList<SeamInfo> seams = new ArrayList<SeamInfo>();
+    for (int i = 0; i < ends.size() && seams.size() < k; i += 1) {
+      if (this.traceFrom(ends.get(i), taken)) {
+        seams.add(this.seamInfo());
+      }
+    }
+    p.metrics.record("backtrace", startNanos, startBytes, (long) this.bound1 * seams.size());
+    return seams;
+  }
+
+  // traces the seam ending at the given d2 back into path, unless it goes through a pixel that
+  // is already taken
+  // returns true if the seam was traced
+  // EFFECT: fills path, and marks every pixel of the seam as taken if it was traced
+  boolean traceFrom(int end, boolean[] taken) {
+    this.path[this.bound1 - 1] = end;
+    for (int d1 = this.bound1 - 1; d1 >= 0; d1 -= 1) {
+      int cell = d1 * this.bound2 + this.path[d1];
+      if (taken[cell]) {
+        return false;
+      }
+      if (d1 > 0) {
+        this.path[d1 - 1] = this.path[d1] + this.cameFrom[cell];
+      }
+    }
+    for (int d1 = 0; d1 < this.bound1; d1 += 1) {
+      taken[d1 * this.bound2 + this.path[d1]] = true;
+    }
+    return true;
+  }
+
+  // the d2 at every d1 of the seam this finder found last
+  public int[] lastPath() {
+    return Arrays.copyOf(this.path, this.bound1);
+  }
+
+  // builds the chain of SeamInfos for the last seam this finder found. The total weight at each
+  // step is the sum of the energies, biases and step costs along the path, which is exactly
+  // what the search added up
+  SeamInfo seamInfo() {
+    SeamInfo seam = null;
+    double totalWeight = 0;
+    for (int d1 = 0; d1 < this.bound1; d1 += 1) {
+      APixel pixel = this.cells[d1 * this.bound2 + this.path[d1]];
+      if (d1 > 0 && this.energyFunction.hasStepCosts()) {
+        totalWeight += this.energyFunction.stepCost(pixel, this.path[d1 - 1] - this.path[d1],
+            this.isVertical);
+      }
+      totalWeight += pixel.energy(this.energyFunction, this.isVertical);
+      if (this.mask != null) {
+        totalWeight += this.mask.biasAt(d1, this.path[d1], this.isVertical);
+      }
+      seam = new SeamInfo(pixel, totalWeight, seam);
+    }
+    return seam;
+  }
+}
+
+// finds seams like a RollingSeamFinder, but fills in each d1 in chunks of d2s on several
+// threads at once. Every d2 only reads the previous d1's weights and writes its own, so the
+// chunks never interfere, and the d1 is finished before the next one starts
+class WavefrontSeamFinder extends RollingSeamFinder {
+  ForkJoinPool pool; // the threads the chunks are filled in on
+  int chunkWidth; // the most d2s filled in by one thread without splitting the chunk
+
+  // the constructor
+  WavefrontSeamFinder(ForkJoinPool pool, int chunkWidth) {
+    this.pool = pool;
+    this.chunkWidth = chunkWidth;
+  }
+
+  // constructor that uses chunks wide enough to be worth handing to another thread
+  WavefrontSeamFinder(ForkJoinPool pool) {
+    this(pool, 1024);
+  }
+
+  // fills in the total weights and choices of every d2 in the given d1, in chunks on the pool,
+  // returning once all of them are done
+  // EFFECT: modifies weights and cameFrom
+  void relaxD1(int d1) {
+    if (this.bound2 <= this.chunkWidth) {
+      this.relaxRow(d1, 0, this.bound2);
+    }
+    else {
+      this.pool.invoke(new RowChunk(this, d1, 0, this.bound2));
+    }
+  }
+}
+
+// Fills in a chunk of one d1 of a WavefrontSeamFinder. Chunks wider than the finder's chunkWidth
+// are split in half, and the halves are filled in at the same time
+class RowChunk extends RecursiveAction {
+  private static final long serialVersionUID = 1L; // tasks are never serialized, but
+  // RecursiveAction is Serializable
+  WavefrontSeamFinder finder; // the finder whose weights are being filled in
+  int d1; // the d1 being filled in
+  int low; // the first d2 in this chunk
+  int high; // the d2 after the last one in this chunk
+
+  // the constructor
+  RowChunk(WavefrontSeamFinder finder, int d1, int low, int high) {
+    this.finder = finder;
+    this.d1 = d1;
+    this.low = low;
+    this.high = high;
+  }
+
+  // fills in the total weights and choices of this chunk
+  // EFFECT: modifies the finder's weights and cameFrom between low and high
+  protected void compute() {
+    if (this.high - this.low <= this.finder.chunkWidth) {
+      this.finder.relaxRow(this.d1, this.low, this.high);
+    }
+    else {
+      int middle = (this.low + this.high) / 2;
+      RecursiveAction.invokeAll(new RowChunk(this.finder, this.d1, this.low, middle),
+          new RowChunk(this.finder, this.d1, middle, this.high));
+    }
+  }
+}
+
+// finds seams on a pyramid of energies. Each level of the pyramid adds up the energies of two by
+// two squares of the level below it, until the picture is no more than coarsest pixels across
+// or along. The lightest seam is found exactly on the smallest level; every finer level only
+// looks for it within corridor pixels either side of where the seam above it lands. Large
+// pictures fill in a small part of their pixels this way, at the cost of sometimes missing the
+// lightest seam where the smaller levels could not see it. Only the energies of pixels are
+// added up, so energy functions that charge seams for stepping across are treated as if they
+// did not
+class PyramidSeamFinder implements ISeamFinder {
+  int corridor; // how many pixels either side of the seam from the level above are searched
+  int coarsest; // the smallest level is no more than this many pixels across or along
+  double[][] levels; // the energies of every level, d1 after d1; levels[0] is the picture's own
+  int[] bounds1; // the number of d1s in every level
+  int[] bounds2; // the number of d2s in every level
+  int depth; // the number of levels in the pyramid for the last search
+  int[] lows; // the first d2 searched in every d1 of the level being searched
+  double[] prevWeights; // the total weights of the d2s searched in the previous d1
+  double[] weights; // the total weights of the d2s searched in the current d1
+  byte[] cameFrom; // which way the best seam through each searched pixel came from
+  APixel[] cells; // every pixel in the picture, d1 after d1
+  int[] path; // the d2 of the last seam found at every d1
+
+  // the constructor
+  PyramidSeamFinder(int corridor, int coarsest) {
+    this.corridor = corridor;
+    this.coarsest = coarsest;
+  }
+
+  // constructor that searches a few pixels either side of the coarser seam, and stops shrinking
+  // at about a thumbnail
+  PyramidSeamFinder() {
+    this(4, 128);
+  }
+
+  // the d2 of the seam this finder picks at every d1 of the given picture, in its current
+  // direction
+  // EFFECT: fills this finder's arrays to describe the given picture
+  int[] findPath(Picture p) {
+    int bound1 = p.height;
+    int bound2 = p.width;
+    if (!p.isVertical) {
+      bound1 = p.width;
+      bound2 = p.height;
+    }
+    if (this.cells == null || this.cells.length < bound1 * bound2) {
+      this.cells = new APixel[bound1 * bound2];
+      this.levels = new double[32][];
+      this.levels[0] = new double[bound1 * bound2];
+      this.bounds1 = new int[32];
+      this.bounds2 = new int[32];
+    }
+    if (this.lows == null || this.lows.length < bound1) {
+      this.lows = new int[bound1];
+    }
+    p.updateEnergies();
+    // every level is searched and traced in turn, and only the finest is as big as the picture,
+    // so the whole search is reported as the dp phase
+    long startNanos = p.metrics.startNanos();
+    long startBytes = p.metrics.startBytes();
+
+    double[] energies = this.levels[0];
+    APixel nextD1Pixel = p.topLeft;
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      APixel nextPixel;
+      if (p.isVertical) {
+        nextD1Pixel = nextD1Pixel.down;
+        nextPixel = nextD1Pixel.right;
+      }
+      else {
+        nextD1Pixel = nextD1Pixel.right;
+        nextPixel = nextD1Pixel.down;
+      }
+      for (int d2 = 0; d2 < bound2; d2 += 1) {
+        this.cells[d1 * bound2 + d2] = nextPixel;
+        energies[d1 * bound2 + d2] = p.weightOf(nextPixel, d1, d2);
+        if (p.isVertical) {
+          nextPixel = nextPixel.right;
+        }
+        else {
+          nextPixel = nextPixel.down;
+        }
+      }
+    }
+    this.bounds1[0] = bound1;
+    this.bounds2[0] = bound2;
+    this.depth = 1;
+    while (this.bounds1[this.depth - 1] > this.coarsest
+        && this.bounds2[this.depth - 1] > this.coarsest) {
+      this.shrink(this.depth);
+      this.depth += 1;
+    }
+
+    int top = this.depth - 1;
+    Arrays.fill(this.lows, 0, this.bounds1[top], 0);
+    int[] levelPath = this.searchLevel(top, this.bounds2[top]);
+    for (int level = top - 1; level >= 0; level -= 1) {
+      int span = Math.min(2 * this.corridor + 2, this.bounds2[level]);
+      for (int d1 = 0; d1 < this.bounds1[level]; d1 += 1) {
+        int low = 2 * levelPath[d1 / 2] - this.corridor;
+        this.lows[d1] = Math.max(0, Math.min(low, this.bounds2[level] - span));
+      }
+      levelPath = this.searchLevel(level, span);
+    }
+    this.path = levelPath;
+    p.metrics.record("dp", startNanos, startBytes, (long) bound1 * bound2);
+    return this.path;
+  }
+
+  // fills in the given level of the pyramid from the level below it: each of its energies is the
+  // sum of a two by two square of the level below, or what is left of one at the far edges
+  // EFFECT: modifies levels, bounds1 and bounds2 at the given level
+  void shrink(int level) {
+    int fineBound1 = this.bounds1[level - 1];
+    int fineBound2 = this.bounds2[level - 1];
+    int bound1 = (fineBound1 + 1) / 2;
+    int bound2 = (fineBound2 + 1) / 2;
+    if (this.levels[level] == null || this.levels[level].length < bound1 * bound2) {
+      this.levels[level] = new double[bound1 * bound2];
+    }
+    double[] fine = this.levels[level - 1];
+    double[] energies = this.levels[level];
+    Arrays.fill(energies, 0, bound1 * bound2, 0);
+    for (int d1 = 0; d1 < fineBound1; d1 += 1) {
+      for (int d2 = 0; d2 < fineBound2; d2 += 1) {
+        energies[(d1 / 2) * bound2 + d2 / 2] += fine[d1 * fineBound2 + d2];
+      }
+    }
+    this.bounds1[level] = bound1;
+    this.bounds2[level] = bound2;
+  }
+
+  // the d2 of the lightest seam at every d1 of the given level that stays within the span d2s
+  // starting at lows in every d1
+  // EFFECT: modifies prevWeights, weights and cameFrom
+  int[] searchLevel(int level, int span) {
+    double[] energies = this.levels[level];
+    int bound1 = this.bounds1[level];
+    int bound2 = this.bounds2[level];
+    if (this.weights == null || this.weights.length < span) {
+      this.prevWeights = new double[span];
+      this.weights = new double[span];
+    }
+    if (this.cameFrom == null || this.cameFrom.length < bound1 * span) {
+      this.cameFrom = new byte[bound1 * span];
+    }
+
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      int low = this.lows[d1];
+      for (int i = 0; i < span; i += 1) {
+        int d2 = low + i;
+        double energy = energies[d1 * bound2 + d2];
+        if (d1 == 0) {
+          this.weights[i] = energy;
+          this.cameFrom[i] = 0;
+        }
+        else {
+          int prevLow = this.lows[d1 - 1];
+          byte step = 0;
+          double best = this.prevWeightAt(prevLow, span, d2);
+          if (this.prevWeightAt(prevLow, span, d2 - 1) < best) {
+            step = -1;
+            best = this.prevWeightAt(prevLow, span, d2 - 1);
+          }
+          if (this.prevWeightAt(prevLow, span, d2 + 1) < best) {
+            step = 1;
+            best = this.prevWeightAt(prevLow, span, d2 + 1);
+          }
+          this.weights[i] = best + energy;
+          this.cameFrom[d1 * span + i] = step;
+        }
+      }
+      double[] done = this.prevWeights;
+      this.prevWeights = this.weights;
+      this.weights = done;
+    }
+
+    int[] levelPath = new int[bound1];
+    int end = 0;
+    for (int i = 1; i < span; i += 1) {
+      if (this.prevWeights[i] < this.prevWeights[end]) {
+        end = i;
+      }
+    }
+    levelPath[bound1 - 1] = this.lows[bound1 - 1] + end;
+    for (int d1 = bound1 - 1; d1 > 0; d1 -= 1) {
+      levelPath[d1 - 1] = levelPath[d1]
+          + this.cameFrom[d1 * span + levelPath[d1] - this.lows[d1]];
+    }
+    return levelPath;
+  }
+
+  // the total weight of the given d2 in the previous d1, which was searched from the given d2
+  // for span d2s. d2s that were not searched can't be part of the seam
+  double prevWeightAt(int prevLow, int span, int d2) {
+    if (d2 < prevLow || d2 >= prevLow + span) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return this.prevWeights[d2 - prevLow];
+  }
+
+  // finds the lightest seam this finder can see in the given picture, as a chain of SeamInfos
+  // from its last pixel back to its first
+  public SeamInfo findSeam(Picture p) {
+    this.findPath(p);
+    SeamInfo seam = null;
+    double totalWeight = 0;
+    int bound2 = this.bounds2[0];
+    for (int d1 = 0; d1 < this.bounds1[0]; d1 += 1) {
+      APixel pixel = this.cells[d1 * bound2 + this.path[d1]];
+      totalWeight += p.weightOf(pixel, d1, this.path[d1]);
+      seam = new SeamInfo(pixel, totalWeight, seam);
+    }
+    return seam;
+  }
+
+  // the d2 at every d1 of the seam this finder found last
+  public int[] lastPath() {
+    return this.path;
+  }
+
+  // how much heavier the seam this finder picks in the given picture is than the lightest one,
+  // as a fraction of the lightest one's weight. 0 means the pyramid found the lightest seam
+  double excessWeight(Picture p) {
+    double exact = new RollingSeamFinder().findSeam(p).totalWeight;
+    return (this.findSeam(p).totalWeight - exact) / exact;
+  }
+}
+
+// Examples class for testing the seam finders
+class ExamplesSeamFinders {
+  Picture p3;
+  Picture p6;
+
+  // Initializes conditions for testing
+  void initTestConditions() {
+    p3 = new Picture("3by3img.jpg");
+    p6 = new Picture("3by3img.jpg");
+    p6.isVertical = false;
+  }
+
+  // tests finding seams from the full seam table
+  void testTableSeamFinder(Tester t) {
+    this.initTestConditions();
+    TableSeamFinder finder = new TableSeamFinder();
+
+    t.checkInexact(finder.findSeam(p3),
+        new SeamInfo(p3.topLeft.down.right.down.down.right, 1.452838575,
+            new SeamInfo(p3.topLeft.down.right.down.right, 1.0196871630,
+                new SeamInfo(p3.topLeft.down.right.right.right, 0.3699600, null))),
+        .001);
+    t.checkExpect(finder.lastPath(), new int[] { 2, 1, 1 });
+    t.checkInexact(finder.findSeam(p6),
+        new SeamInfo(p6.topLeft.down.right.right.right, 1.2468494473,
+            new SeamInfo(p6.topLeft.down.right.right, 0.8768894,
+                new SeamInfo(p6.topLeft.down.right, 0.4384447, null))),
+        .001);
+  }
+
+  // tests finding seams with two rows of weights and a grid of choices
+  void testRollingSeamFinder(Tester t) {
+    this.initTestConditions();
+    RollingSeamFinder finder = new RollingSeamFinder();
+
+    t.checkExpect(finder.findPath(p3), new int[] { 2, 1, 1 });
+    t.checkExpect(finder.lastPath(), new int[] { 2, 1, 1 });
+    t.checkExpect(finder.cameFrom[3 + 1], (byte) 1);
+    t.checkExpect(finder.cameFrom[6 + 1], (byte) 0);
+    t.checkInexact(finder.findSeam(p3),
+        new SeamInfo(p3.topLeft.down.right.down.down.right, 1.452838575,
+            new SeamInfo(p3.topLeft.down.right.down.right, 1.0196871630,
+                new SeamInfo(p3.topLeft.down.right.right.right, 0.3699600, null))),
+        .001);
+    t.checkInexact(finder.findSeam(p6),
+        new SeamInfo(p6.topLeft.down.right.right.right, 1.2468494473,
+            new SeamInfo(p6.topLeft.down.right.right, 0.8768894,
+                new SeamInfo(p6.topLeft.down.right, 0.4384447, null))),
+        .001);
+
+    // carving with either finder removes the same seams
+    Picture rolling = new Picture("balloons.jpg", new java.util.Random(6));
+    Picture table = new Picture("balloons.jpg", new java.util.Random(6));
+    rolling.finder = new RollingSeamFinder();
+    for (int i = 0; i < 8; i += 1) {
+      rolling.onTick();
+      table.onTick();
+      t.checkExpect(rolling.seamToRemove.totalWeight, table.seamToRemove.totalWeight);
+      rolling.onTick();
+      table.onTick();
+    }
+    t.checkExpect(rolling.width, table.width);
+    t.checkExpect(rolling.height, table.height);
+    t.checkExpect(rolling.topLeft, table.topLeft);
+  }
+
+  // tests that filling in each d1 in parallel chunks gives exactly the same weights and choices
+  // as filling it in on one thread
+  void testWavefrontSeamFinder(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Picture p = new Picture("balloons.jpg");
+    RollingSeamFinder rolling = new RollingSeamFinder();
+    WavefrontSeamFinder wavefront = new WavefrontSeamFinder(pool, 16);
+
+    t.checkExpect(wavefront.findPath(p), rolling.findPath(p));
+    t.checkExpect(wavefront.cameFrom, rolling.cameFrom);
+    t.checkExpect(wavefront.prevWeights, rolling.prevWeights);
+
+    p.isVertical = false;
+    t.checkExpect(wavefront.findPath(p), rolling.findPath(p));
+    t.checkExpect(wavefront.cameFrom, rolling.cameFrom);
+    t.checkExpect(wavefront.prevWeights, rolling.prevWeights);
+
+    // narrow pictures are filled in without splitting
+    this.initTestConditions();
+    t.checkExpect(new WavefrontSeamFinder(pool).findPath(p3), new int[] { 2, 1, 1 });
+    pool.shutdown();
+  }
+
+  // tests finding seams on a pyramid of energies
+  void testPyramidSeamFinder(Tester t) {
+    this.initTestConditions();
+    PyramidSeamFinder finder = new PyramidSeamFinder();
+
+    // pictures smaller than the coarsest level are searched exactly
+    t.checkExpect(finder.findPath(p3), new int[] { 2, 1, 1 });
+    t.checkExpect(finder.depth, 1);
+    t.checkInexact(finder.findSeam(p6).totalWeight, 1.2468494473, 0.001);
+
+    // a corridor as wide as the picture finds the lightest seam
+    Picture p = new Picture("balloons.jpg");
+    PyramidSeamFinder wide = new PyramidSeamFinder(800, 16);
+    RollingSeamFinder exact = new RollingSeamFinder();
+    exact.findPath(p);
+    t.checkExpect(wide.findPath(p), exact.lastPath());
+    t.checkExpect(wide.depth, 6);
+    t.checkExpect(wide.bounds2[1], 400);
+    t.checkExpect(wide.bounds1[4], 22);
+    p.isVertical = false;
+    exact.findPath(p);
+    t.checkExpect(wide.findPath(p), exact.lastPath());
+
+    // a narrow corridor still finds a connected seam close to the lightest one
+    PyramidSeamFinder narrow = new PyramidSeamFinder(2, 32);
+    p.isVertical = true;
+    int[] path = narrow.findPath(p);
+    boolean isConnected = true;
+    for (int d1 = 1; d1 < path.length; d1 += 1) {
+      isConnected = isConnected && Math.abs(path[d1] - path[d1 - 1]) <= 1;
+    }
+    t.checkExpect(isConnected, true);
+    t.checkExpect(narrow.depth, 5);
+    double excess = narrow.excessWeight(p);
+    t.checkExpect(excess >= 0 && excess < 0.5, true);
+    t.checkInexact(wide.excessWeight(p), 0.0, 0.000001);
+
+    // a picture can carve with it
+    p.finder = narrow;
+    p.onTick();
+    p.onTick();
+    t.checkExpect(p.width, 799);
+  }
+}
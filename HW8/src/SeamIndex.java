@@ -0,0 +1,274 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import tester.*;
+
+// Records the order in which carving removes every pixel of an image, so the image can be
+// narrowed to any width without finding seams again. The image is carved all the way down to
+// one column once, the same way Picture and PackedPicture carve vertical seams, and each pixel
+// is labeled with the number of seams removed before its own. Narrowing to a width w then keeps
+// exactly the pixels labeled width - w or more: one pass over the image, and each row keeps w
+// pixels. The index is saved next to the image as a small binary file.
+// usage: java SeamIndex <input image> <index file>
+//        java SeamIndex <input image> <index file> <width> <output image>
+// The first builds the index of the image and writes it; the second reads it and writes the
+// image narrowed to the given width.
+class SeamIndex {
+  static final int MAGIC = 0x53454958; // "SEIX", the first four bytes of every index file
+  static final int VERSION = 1; // the version of the file format this class writes
+  int width; // width of the image in pixels
+  int height; // height of the image in pixels
+  int[] order; // for every pixel of the image, row after row, the number of seams removed
+  // before it was. The pixels that are never removed are labeled width - 1
+
+  // the constructor
+  SeamIndex(int width, int height, int[] order) {
+    this.width = width;
+    this.height = height;
+    this.order = order;
+  }
+
+  // builds or applies the index of the image named on the command line
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    if (args.length != 2 && args.length != 4) {
+      System.err.println("usage: java SeamIndex <input image> <index file> "
+          + "[<width> <output image>]");
+      System.exit(2);
+    }
+    long start = System.nanoTime();
+    PixelRaster raster = PixelRaster.read(args[0]);
+    if (args.length == 2) {
+      SeamIndex.build(raster).write(args[1]);
+      System.out.printf("%s -> %s in %.1f ms%n", args[0], args[1],
+          (System.nanoTime() - start) / 1e6);
+    }
+    else {
+      int targetWidth = Integer.parseInt(args[2]);
+      SeamIndex index = SeamIndex.read(args[1]);
+      index.checkSize(raster.width, raster.height);
+      int[] narrowed = index.filter(raster.argb, targetWidth);
+      HeadlessCarver.write(narrowed, targetWidth, raster.height, args[3]);
+      System.out.printf("%s -> %s: %dx%d in %.1f ms%n", args[0], args[3], targetWidth,
+          raster.height, (System.nanoTime() - start) / 1e6);
+    }
+  }
+
+  // the index of the image with the given colors, found by removing every vertical seam but
+  // the last column from a PackedPicture of it, while following where each of its pixels
+  // started out
+  static SeamIndex build(PixelRaster raster) {
+    int width = raster.width;
+    int height = raster.height;
+    PackedPicture p = new PackedPicture(raster.argb.clone(), width, height);
+    // the index in the image of each pixel still in p, row after row, width apart
+    int[] origins = new int[width * height];
+    for (int i = 0; i < origins.length; i += 1) {
+      origins[i] = i;
+    }
+    int[] order = new int[width * height];
+    for (int seam = 0; seam < width - 1; seam += 1) {
+      int[] path = p.findSeam(true);
+      for (int row = 0; row < height; row += 1) {
+        int start = row * width;
+        int col = path[row];
+        order[origins[start + col]] = seam;
+        System.arraycopy(origins, start + col + 1, origins, start + col, p.width - col - 1);
+      }
+      p.removeVerticalSeam(path);
+    }
+    for (int row = 0; row < height; row += 1) {
+      order[origins[row * width]] = width - 1;
+    }
+    return new SeamIndex(width, height, order);
+  }
+
+  // checks that this index was built for an image of the given size
+  // throws an IllegalArgumentException if it was built for an image of another size
+  void checkSize(int imageWidth, int imageHeight) {
+    if (imageWidth != this.width || imageHeight != this.height) {
+      throw new IllegalArgumentException("the image is " + imageWidth + "x" + imageHeight
+          + ", but the index is for a " + this.width + "x" + this.height + " image");
+    }
+  }
+
+  // the given colors of the indexed image, row after row, narrowed to the given width by
+  // keeping only the pixels that carving would not have removed yet
+  // throws an IllegalArgumentException if there are not as many colors as the indexed image has
+  // pixels, or the width is not between 1 and the image's width
+  int[] filter(int[] argb, int targetWidth) {
+    if (argb.length != this.order.length) {
+      throw new IllegalArgumentException("the image has " + argb.length
+          + " pixels, but the index is for a " + this.width + "x" + this.height + " image");
+    }
+    if (targetWidth < 1 || targetWidth > this.width) {
+      throw new IllegalArgumentException("width " + targetWidth + " is not between 1 and "
+          + this.width);
+    }
+    int cutoff = this.width - targetWidth;
+    int[] narrowed = new int[targetWidth * this.height];
+    int next = 0;
+    for (int i = 0; i < this.order.length; i += 1) {
+      if (this.order[i] >= cutoff) {
+        narrowed[next] = argb[i];
+        next += 1;
+      }
+    }
+    return narrowed;
+  }
+
+  // writes this index to the given file: MAGIC, VERSION, the width and height, then every
+  // label, as two bytes each if the image is at most 65536 pixels wide and four otherwise
+  // throws an IOException if the file cannot be written
+  void write(String fileName) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(fileName)));
+    out.writeInt(SeamIndex.MAGIC);
+    out.writeInt(SeamIndex.VERSION);
+    out.writeInt(this.width);
+    out.writeInt(this.height);
+    boolean isShort = this.width <= 65536;
+    for (int label : this.order) {
+      if (isShort) {
+        out.writeShort(label);
+      }
+      else {
+        out.writeInt(label);
+      }
+    }
+    out.close();
+  }
+
+  // reads an index written by write from the given file
+  // throws an IOException if the file cannot be read or is not an index this class can read
+  static SeamIndex read(String fileName) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(fileName)));
+    try {
+      if (in.readInt() != SeamIndex.MAGIC) {
+        throw new IOException(fileName + " is not a seam index");
+      }
+      int version = in.readInt();
+      if (version != SeamIndex.VERSION) {
+        throw new IOException(fileName + " is a version " + version + " seam index");
+      }
+      int width = in.readInt();
+      int height = in.readInt();
+      if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+        throw new IOException(fileName + " has an invalid size " + width + "x" + height);
+      }
+      boolean isShort = width <= 65536;
+      int[] order = new int[width * height];
+      for (int i = 0; i < order.length; i += 1) {
+        if (isShort) {
+          order[i] = in.readUnsignedShort();
+        }
+        else {
+          order[i] = in.readInt();
+        }
+      }
+      return new SeamIndex(width, height, order);
+    }
+    finally {
+      in.close();
+    }
+  }
+}
+
+// Examples class for testing SeamIndex
+class ExamplesSeamIndex {
+
+  // tests that narrowing with the index gives the same image as carving
+  void testFilter(Tester t) {
+    PixelRaster small = PixelRaster.read("3by3img.jpg");
+    SeamIndex index = SeamIndex.build(small);
+    // the lightest vertical seam goes through columns 2, 1, 1
+    t.checkExpect(index.order[2], 0);
+    t.checkExpect(index.order[3 + 1], 0);
+    t.checkExpect(index.order[6 + 1], 0);
+    t.checkExpect(index.filter(small.argb, 3), small.argb);
+    t.checkExpect(index.filter(small.argb, 1).length, 3);
+
+    // every row keeps the target width, matching a Picture carved that far
+    PackedPicture thumbnail = PackedPicture.scaledDown(PixelRaster.read("balloons.jpg").argb,
+        800, 343, 5);
+    PixelRaster raster = new PixelRaster(thumbnail.toArgb(), thumbnail.width, thumbnail.height);
+    index = SeamIndex.build(raster);
+    for (int targetWidth : new int[] { 150, 97, 12 }) {
+      Picture carved = new Picture(raster, new java.util.Random(1));
+      carved.carve(raster.width - targetWidth, new VerticalMode());
+      t.checkExpect(index.filter(raster.argb, targetWidth), carved.toArgb());
+    }
+    String message = "";
+    try {
+      index.filter(raster.argb, 161);
+    }
+    catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "width 161 is not between 1 and 160");
+
+    // an index built for another image is rejected rather than scrambling it
+    message = "";
+    try {
+      index.filter(small.argb, 2);
+    }
+    catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "the image has 9 pixels, but the index is for a 160x68 image");
+    index.checkSize(160, 68);
+    message = "";
+    try {
+      index.checkSize(68, 160);
+    }
+    catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "the image is 68x160, but the index is for a 160x68 image");
+  }
+
+  // tests writing an index to a file and reading it back
+  void testWriteAndRead(Tester t) throws IOException {
+    PixelRaster small = PixelRaster.read("3by3img.jpg");
+    SeamIndex index = SeamIndex.build(small);
+    File file = File.createTempFile("balloons", ".seams");
+    index.write(file.getPath());
+    t.checkExpect(file.length(), 16L + 2 * 9);
+    t.checkExpect(SeamIndex.read(file.getPath()), index);
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+    out.writeLong(0);
+    out.close();
+    String message = "";
+    try {
+      SeamIndex.read(file.getPath());
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, file.getPath() + " is not a seam index");
+
+    out = new DataOutputStream(new FileOutputStream(file));
+    out.writeInt(SeamIndex.MAGIC);
+    out.writeInt(SeamIndex.VERSION);
+    out.writeInt(-3);
+    out.writeInt(3);
+    out.close();
+    message = "";
+    try {
+      SeamIndex.read(file.getPath());
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, file.getPath() + " has an invalid size -3x3");
+    file.delete();
+  }
+}
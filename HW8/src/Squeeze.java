@@ -1,5 +1,8 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import tester.*;
 import javalib.impworld.*;
@@ -29,6 +32,87 @@ class SeamInfo {
   }
 }
 
+// Represents a seam removed from a Picture, kept so it can be put back and taken out again. The
+// removed pixels keep their own links to the pixels they were taken out from between, so the seam
+// goes back in, and comes out again, by relinking the pixels around it: O(seam length) either way
+class SeamRecord {
+  boolean isVertical; // true if the seam was a vertical one
+  int[] offsets; // the d2 of the seam's pixel at every d1 (the column in each row if isVertical),
+  // or null if the seam was removed without its position being known
+  APixel[] pixels; // the seam's pixel at every d1, then the sentinel at the head of its column
+  // (row if !isVertical), which is removed with it
+  float[] bias; // the bias of the seam's pixel at every d1 in the picture's mask, or null if
+  // the picture had no mask
+
+  // Constructs the record of the given seam, in the given direction and through the given d2 of
+  // every d1, before it is removed. The given seam is its last SeamInfo
+  SeamRecord(SeamInfo seam, boolean isVertical, int length, int[] offsets) {
+    this.isVertical = isVertical;
+    this.offsets = offsets;
+    this.bias = null;
+    this.pixels = new APixel[length + 1];
+    SeamInfo cell = seam;
+    for (int d1 = length - 1; d1 >= 0; d1 -= 1) {
+      this.pixels[d1] = cell.thisPixel;
+      cell = cell.cameFrom;
+    }
+    if (isVertical) {
+      this.pixels[length] = this.pixels[0].up;
+    }
+    else {
+      this.pixels[length] = this.pixels[0].left;
+    }
+  }
+
+  // takes this seam out of the grid of pixels it is in, last d1 first, then its sentinel
+  // EFFECT: links the pixels on either side of the seam to each other
+  void unlink() {
+    int length = this.pixels.length - 1;
+    for (int d1 = length - 1; d1 >= 0; d1 -= 1) {
+      APixel next = null;
+      if (d1 > 0) {
+        next = this.pixels[d1 - 1];
+      }
+      if (this.isVertical) {
+        this.pixels[d1].unlinkVert(next);
+      }
+      else {
+        this.pixels[d1].unlinkHoriz(next);
+      }
+    }
+    if (this.isVertical) {
+      this.pixels[length].unlinkVert(null);
+    }
+    else {
+      this.pixels[length].unlinkHoriz(null);
+    }
+  }
+
+  // puts this seam back in the grid it was taken out of, undoing unlink step by step in reverse
+  // EFFECT: links the pixels on either side of the seam back to the seam's pixels
+  void relink() {
+    int length = this.pixels.length - 1;
+    if (this.isVertical) {
+      this.pixels[length].relinkVert(null);
+    }
+    else {
+      this.pixels[length].relinkHoriz(null);
+    }
+    for (int d1 = 0; d1 < length; d1 += 1) {
+      APixel next = null;
+      if (d1 > 0) {
+        next = this.pixels[d1 - 1];
+      }
+      if (this.isVertical) {
+        this.pixels[d1].relinkVert(next);
+      }
+      else {
+        this.pixels[d1].relinkHoriz(next);
+      }
+    }
+  }
+}
+
 // represents a removing mode that the world is in: either vertically removing (seams), horizontally
 // removing, or randomly removing
 interface IMode {
@@ -92,29 +176,75 @@ class Picture extends World {
   int width; // width of the image in pixels
   int height; // height of the image in pixels
   SeamInfo seamToRemove; // the seam to remove in the current tick. If there is no seam to remove
+  int[] highlightedSeam; // the d2 of the highlighted seam's pixel at every d1 (the column in each
+  // row if isVertical), drawn in red over the picture. null if no seam is highlighted
   boolean isRemoving;// true if the world is paused
   boolean showEnergies; // true if the image is being displayed in grayscale with cell energies
   boolean isVertical; // true if the image is removing a vertical seam in the upcoming tick(s)
   boolean showSeamWeights; // true if the image is being displayed in grayscale with seam weights
   IMode mode; // the removing state of this Picture world
   Random r; // random object: used when removing seams randomly (horiz vs. vertical)
+  static final Color BLANK = new Color(0, 0, 0, 0); // drawn where the picture used to reach
+  static final IMetricsSink NO_METRICS = new NoMetrics(); // the sink of pictures that keep no
+  // metrics
+  boolean isIncremental; // true if the seam table is patched after a removal instead of rebuilt
+  ArrayList<ArrayList<SeamInfo>> seamTable; // the seam table kept between ticks when
+  // isIncremental. null if there is no table to reuse
+  boolean isTableVertical; // true if seamTable was built for vertical seams
+  ISeamFinder finder; // how this picture finds the next seam to remove
+  ForkJoinPool energyPool; // the pool that energies are computed on in bands of rows, or null to
+  // compute them all on the world's thread
+  ComputedPixelImage frame; // the image drawn by the last makeScene, at the picture's original
+  // size. null until the first makeScene
+  int frameWidth; // the width of frame
+  int frameHeight; // the height of frame
+  int drawnWidth; // the width of the picture when frame was last drawn
+  int drawnHeight; // the height of the picture when frame was last drawn
+  int[] rowDirtyFrom; // the first column of each row that must be drawn again
+  int[] colDirtyFrom; // the first row of each column that must be drawn again
+  int[] drawnSeam; // the highlighted seam when frame was last drawn, or null
+  boolean isDrawnSeamVertical; // true if drawnSeam was a vertical seam
+  boolean drewEnergies; // true if frame shows cell energies
+  boolean drewSeamWeights; // true if frame shows seam weights
+  IEnergyFunction energyFunction; // how the energy of every pixel is measured
+  boolean energyVertical; // the direction the cached energies were calculated for, if they
+  // depend on it
+  ArrayList<SeamRecord> history; // every seam removed from this Picture, oldest first, including
+  // those that have been undone since
+  int seamsRemoved; // the number of seams in history that are currently removed
+  int historyLimit; // the most seams history keeps; the oldest are forgotten past it
+  BiasMask mask; // the bias added to the energy of every pixel when finding seams, or null
+  IMetricsSink metrics; // where the time, pixels and allocation of each phase are reported
 
   // Constructs a Picture and Transforms it into a 2D pixel deque that can be used
   // for seam removal.
   Picture(String imgFileName, Random r) {
-    FromFileImage img = new FromFileImage(imgFileName);
-    this.width = (int) img.getWidth();
-    this.height = (int) img.getHeight();
+    this(PixelRaster.read(imgFileName), r);
+  }
+
+  // Constructs a Picture from the packed colors of the given raster, building the 2D pixel
+  // deque straight from them
+  Picture(PixelRaster raster, Random r) {
+    this.width = raster.width;
+    this.height = raster.height;
     this.isRemoving = true;
     this.showEnergies = false;
     this.isVertical = true;
     this.showSeamWeights = false;
     this.mode = new RandomMode();
     this.r = r;
+    this.finder = new TableSeamFinder();
+    this.energyFunction = new GradientEnergy();
+    this.energyVertical = true;
+    this.history = new ArrayList<SeamRecord>();
+    this.seamsRemoved = 0;
+    this.historyLimit = Integer.MAX_VALUE;
+    this.mask = null;
+    this.metrics = Picture.NO_METRICS;
 
     topLeft = new SentinelPixel();
     APixel prevRowPixel = topLeft;
-    for (int row = 0; row < img.getHeight(); row += 1) {
+    for (int row = 0; row < raster.height; row += 1) {
       APixel newPrevRowPixel = new SentinelPixel();
       newPrevRowPixel.up = prevRowPixel;
       newPrevRowPixel.down = prevRowPixel.down;
@@ -122,9 +252,10 @@ class Picture extends World {
       newPrevRowPixel.down.up = newPrevRowPixel;
       prevRowPixel = newPrevRowPixel;
       APixel prevPixel = prevRowPixel;
-      for (int col = 0; col < img.getWidth(); col += 1) {
-        Pixel thisPixel = new Pixel(prevPixel.up.right, new SentinelPixel(), prevPixel,
-            prevPixel.right, img.getColorAt(col, row));
+      for (int col = 0; col < raster.width; col += 1) {
+        // down is linked below, once it is known
+        Pixel thisPixel = new Pixel(prevPixel.up.right, null, prevPixel, prevPixel.right,
+            new Color(raster.argb[row * raster.width + col], true));
         if (row == 0) {
           SentinelPixel newSent = new SentinelPixel();
           newSent.left = prevPixel.up;
@@ -152,54 +283,167 @@ class Picture extends World {
     this(imgFileName, new Random());
   }
 
-  // renders this Picture as an image
+  // renders this Picture as an image. The image is drawn into a frame kept from the last
+  // render, and only the pixels that could look different since then are drawn again: those
+  // from a little before each removed seam to the end of its row or column, and those under
+  // the highlighted seam now or last time. Seam weights are only worked out while they are
+  // shown, and showing them redraws everything
+  // EFFECT: updates frame and the record of what it shows
   public WorldScene makeScene() {
+    if (this.frame == null) {
+      this.frame = new ComputedPixelImage(this.width, this.height);
+      this.frameWidth = this.width;
+      this.frameHeight = this.height;
+      this.drawnWidth = this.width;
+      this.drawnHeight = this.height;
+      this.rowDirtyFrom = new int[this.height];
+      this.colDirtyFrom = new int[this.width];
+    }
+    boolean redrawAll = this.showEnergies != this.drewEnergies || this.showSeamWeights
+        || this.drewSeamWeights;
 
-    ComputedPixelImage cpi = new ComputedPixelImage(this.width, this.height);
-    APixel nextRowPixel = topLeft;
-    ArrayList<ArrayList<SeamInfo>> seams = new ArrayList<ArrayList<SeamInfo>>();
-    this.updateSeams(seams);
-    SeamInfo maxSeam = seams.get(0).get(0);
-    for (int row = 0; row < seams.size(); row += 1) {
-      for (int col = 0; col < seams.get(row).size(); col += 1) {
-        if (seams.get(row).get(col).totalWeight > maxSeam.totalWeight) {
-          maxSeam = seams.get(row).get(col);
+    ArrayList<ArrayList<SeamInfo>> seams = null;
+    float maxWeight = 0;
+    if (this.showSeamWeights) {
+      seams = new ArrayList<ArrayList<SeamInfo>>();
+      this.updateSeams(seams);
+      SeamInfo maxSeam = seams.get(0).get(0);
+      for (int row = 0; row < seams.size(); row += 1) {
+        for (int col = 0; col < seams.get(row).size(); col += 1) {
+          if (seams.get(row).get(col).totalWeight > maxSeam.totalWeight) {
+            maxSeam = seams.get(row).get(col);
+          }
         }
       }
+      maxWeight = (float) maxSeam.totalWeight;
     }
-    float maxWeight = (float) maxSeam.totalWeight;
 
+    // the seam table above is reported as its own phases
+    long startNanos = this.metrics.startNanos();
+    long startBytes = this.metrics.startBytes();
+    APixel nextRowPixel = topLeft;
     for (int row = 0; row < this.height; row += 1) {
       nextRowPixel = nextRowPixel.down;
       APixel nextPixel = nextRowPixel.right;
       for (int col = 0; col < this.width; col += 1) {
-        Color c = nextPixel.color;
-        if (this.showEnergies) {
-          float energy = (float) nextPixel.calculateEnergy();
-          c = new Color(energy / 4, energy / 4, energy / 4);
+        if (redrawAll || col >= this.rowDirtyFrom[row] || row >= this.colDirtyFrom[col]
+            || this.isHighlighted(col, row) || this.wasHighlighted(col, row)) {
+          this.frame.setPixel(col, row, this.sceneColor(nextPixel, col, row, seams, maxWeight));
         }
-        else if (this.showSeamWeights) {
-          if (this.isVertical) {
-            float thisWeight = (float) seams.get(row).get(col).totalWeight;
-            c = new Color(thisWeight / maxWeight, thisWeight / maxWeight, thisWeight / maxWeight);
-          }
-          else {
-            float thisWeight = (float) seams.get(col).get(row).totalWeight;
-            c = new Color(thisWeight / maxWeight, thisWeight / maxWeight, thisWeight / maxWeight);
-          }
-        }
-        cpi.setPixel(col, row, c);
         nextPixel = nextPixel.right;
       }
+      // clears the columns the picture no longer covers
+      for (int col = this.width; col < this.drawnWidth; col += 1) {
+        this.frame.setPixel(col, row, Picture.BLANK);
+      }
+    }
+    // clears the rows the picture no longer covers
+    for (int row = this.height; row < this.drawnHeight; row += 1) {
+      for (int col = 0; col < this.frameWidth; col += 1) {
+        this.frame.setPixel(col, row, Picture.BLANK);
+      }
     }
 
+    Arrays.fill(this.rowDirtyFrom, Integer.MAX_VALUE);
+    Arrays.fill(this.colDirtyFrom, Integer.MAX_VALUE);
+    this.drawnWidth = this.width;
+    this.drawnHeight = this.height;
+    this.drawnSeam = this.highlightedSeam;
+    this.isDrawnSeamVertical = this.isVertical;
+    this.drewEnergies = this.showEnergies;
+    this.drewSeamWeights = this.showSeamWeights;
+
     WorldScene ws = new WorldScene(this.width, this.height);
 
-    ws.placeImageXY(cpi, this.width / 2, this.height / 2);
+    ws.placeImageXY(this.frame, this.frameWidth / 2, this.frameHeight / 2);
 
+    this.metrics.record("makeScene", startNanos, startBytes, (long) this.width * this.height);
     return ws;
   }
 
+  // the color the given pixel, at the given column and row, is drawn in the current view. The
+  // seam table and its largest weight are only needed when seam weights are shown
+  Color sceneColor(APixel pixel, int col, int row, ArrayList<ArrayList<SeamInfo>> seams,
+      float maxWeight) {
+    Color c = pixel.color;
+    if (this.isHighlighted(col, row)) {
+      c = Color.RED;
+    }
+    else if (this.showEnergies) {
+      float energy = Math.min(1, (float) this.energyOf(pixel) / 4);
+      c = new Color(energy, energy, energy);
+    }
+    else if (this.showSeamWeights) {
+      float thisWeight;
+      if (this.isVertical) {
+        thisWeight = (float) seams.get(row).get(col).totalWeight;
+      }
+      else {
+        thisWeight = (float) seams.get(col).get(row).totalWeight;
+      }
+      // a mask can push weights below zero
+      float shade = Math.max(0, thisWeight / maxWeight);
+      c = new Color(shade, shade, shade);
+    }
+    return c;
+  }
+
+  // was the pixel at the given column and row drawn as part of the highlighted seam in the last
+  // render?
+  boolean wasHighlighted(int col, int row) {
+    if (this.drawnSeam == null) {
+      return false;
+    }
+    else if (this.isDrawnSeamVertical) {
+      return row < this.drawnSeam.length && this.drawnSeam[row] == col;
+    }
+    else {
+      return col < this.drawnSeam.length && this.drawnSeam[col] == row;
+    }
+  }
+
+  // marks the pixels that may look different after the seam through the given d2 of every d1
+  // was removed in the current direction: those from just before the seam (whose energies
+  // changed) to the end of each row or column (which moved over by one)
+  // EFFECT: lowers rowDirtyFrom or colDirtyFrom along the seam
+  void markDirty(int[] path) {
+    this.markDirty(path, this.isVertical);
+  }
+
+  // marks the pixels that may look different after the seam through the given d2 of every d1
+  // was removed or put back, with d1 running down the rows if the given direction is vertical
+  // EFFECT: lowers rowDirtyFrom or colDirtyFrom along the seam
+  void markDirty(int[] path, boolean isVertical) {
+    for (int d1 = 0; d1 < path.length; d1 += 1) {
+      int from = Math.max(0, path[d1] - this.energyFunction.radius() - 1);
+      if (isVertical) {
+        this.rowDirtyFrom[d1] = Math.min(this.rowDirtyFrom[d1], from);
+      }
+      else {
+        this.colDirtyFrom[d1] = Math.min(this.colDirtyFrom[d1], from);
+      }
+    }
+  }
+
+  // marks every pixel as needing to be drawn again
+  // EFFECT: sets every entry of rowDirtyFrom to 0
+  void markAllDirty() {
+    Arrays.fill(this.rowDirtyFrom, 0);
+  }
+
+  // is the pixel at the given column and row part of the highlighted seam?
+  boolean isHighlighted(int col, int row) {
+    if (this.highlightedSeam == null) {
+      return false;
+    }
+    else if (this.isVertical) {
+      return this.highlightedSeam[row] == col;
+    }
+    else {
+      return this.highlightedSeam[col] == row;
+    }
+  }
+
   // Method that gets run every tick. Either removes a seam or identifies and
   // highlights a seam
   // to be removed the next time onTick is called.
@@ -210,9 +454,9 @@ class Picture extends World {
   // cameFrom field (to let the next tick know that the seam has already been
   // removed), and width is
   // reduced by one.
-  // if the seam is being highlighted on this tick, modifies the pixels in the
-  // seam to have a red
-  // color, and modifies the seamToRemove field to contain the seam to be removed
+  // if the seam is being highlighted on this tick, modifies highlightedSeam so
+  // the seam is drawn in red,
+  // and modifies the seamToRemove field to contain the seam to be removed
   // in the next tick
   public void onTick() {
 
@@ -226,113 +470,846 @@ class Picture extends World {
 
     if (this.seamToRemove != null && this.seamToRemove.cameFrom != null) {
       this.removeSeam();
-      if (this.mode.isRandom()) {
-        this.isVertical = r.nextBoolean();
+      this.chooseDirection(this.mode);
+    }
+    else {
+      // updates the seamToRemove field so that, in the next tick, this seam will be
+      // removed from
+      // this image
+      this.seamToRemove = this.finder.findSeam(this);
+
+      // highlights the seam in red, leaving the pixels themselves alone
+      this.highlightedSeam = this.finder.lastPath();
+    }
+  }
+
+  // responds to user key presses
+  public void onKeyEvent(String key) {
+    if (key.equals(" ")) {
+      // space pauses the world
+      this.isRemoving = !this.isRemoving;
+    }
+    else if (key.equals("b")) {
+      // "b" toggles grayscale for cell energies
+      this.showEnergies = !this.showEnergies;
+      this.showSeamWeights = false;
+    }
+    else if (key.equals("r")) {
+      // "r" changes the removing mode to random
+      this.mode = new RandomMode();
+    }
+    else if (key.equals("h")) {
+      // "h" changes the removing mode to horizontal
+      this.mode = new HorizontalMode();
+    }
+    else if (key.equals("v")) {
+      // "v" changes the removing mode to vertical
+      this.mode = new VerticalMode();
+    }
+    else if (key.equals("s")) {
+      // "s" toggles grayscale for seam weights
+      this.showEnergies = false;
+      this.showSeamWeights = !this.showSeamWeights;
+    }
+    else if (key.equals("i")) {
+      // "i" toggles keeping the seam table between ticks
+      this.isIncremental = !this.isIncremental;
+      this.seamTable = null;
+    }
+    else if (key.equals("u")) {
+      // "u" puts back the last seam removed
+      this.undo();
+    }
+    else if (key.equals("y")) {
+      // "y" removes the last seam put back again
+      this.redo();
+    }
+  }
+
+  // the ARGB colors of every pixel in this Picture, row after row
+  int[] toArgb() {
+    int[] argb = new int[this.width * this.height];
+    APixel nextRowPixel = this.topLeft;
+    for (int row = 0; row < this.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < this.width; col += 1) {
+        argb[row * this.width + col] = nextPixel.color.getRGB();
+        nextPixel = nextPixel.right;
       }
-      else if (this.mode.isVertical()) {
-        this.isVertical = true;
+    }
+    return argb;
+  }
+
+  // sets the direction of the next seam to remove according to the given mode
+  // EFFECT: modifies isVertical, picking it at random if the mode is random
+  void chooseDirection(IMode mode) {
+    if (mode.isRandom()) {
+      this.isVertical = r.nextBoolean();
+    }
+    else if (mode.isVertical()) {
+      this.isVertical = true;
+    }
+    else if (mode.isHorizontal()) {
+      this.isVertical = false;
+    }
+  }
+
+  // removes k seams from this Picture one after the other, in the direction(s) given by the
+  // given mode, without highlighting them first. The seam table is kept between seams, so each
+  // seam only recomputes the cells near the one before it. A seam that is already highlighted
+  // is removed first, and counts as one of the k. Stops early if the picture gets down to one
+  // pixel wide or high
+  // returns the total weight of the removed seams
+  // EFFECT: removes seams from this Picture, reducing width and/or height
+  double carve(int k, IMode mode) {
+    boolean wasIncremental = this.isIncremental;
+    this.isIncremental = true;
+    double removedWeight = 0;
+    int removed = 0;
+    if (this.seamToRemove != null && this.seamToRemove.cameFrom != null) {
+      removedWeight += this.seamToRemove.totalWeight;
+      this.removeSeam();
+      removed += 1;
+    }
+    while (removed < k && this.width > 1 && this.height > 1) {
+      long startNanos = this.metrics.startNanos();
+      long startBytes = this.metrics.startBytes();
+      this.chooseDirection(mode);
+      this.seamToRemove = this.finder.findSeam(this);
+      removedWeight += this.seamToRemove.totalWeight;
+      this.removeSeam();
+      removed += 1;
+      this.metrics.record("seam", startNanos, startBytes, (long) this.width * this.height);
+    }
+    this.isIncremental = wasIncremental;
+    if (!wasIncremental) {
+      this.seamTable = null;
+    }
+    return removedWeight;
+  }
+
+  // removes k seams from this Picture in the direction(s) given by the given mode, taking as many
+  // as possible from each search: the lightest seams that share no pixels are all removed
+  // before searching again. This does far fewer searches than carve, but every seam after the
+  // first in a batch is only the lightest of what was left in the picture before the batch
+  // started. As in carve, a seam that is already highlighted is removed first, and counts as one
+  // of the k. Stops early if the picture gets down to one pixel wide or high
+  // returns the total weight of the removed seams, as of the searches that found them
+  // EFFECT: removes seams from this Picture, reducing width and/or height
+  double carveBatch(int k, IMode mode) {
+    RollingSeamFinder batchFinder = new RollingSeamFinder();
+    double removedWeight = 0;
+    int removed = 0;
+    if (this.seamToRemove != null && this.seamToRemove.cameFrom != null) {
+      removedWeight += this.seamToRemove.totalWeight;
+      this.removeSeam();
+      removed += 1;
+    }
+    while (removed < k && this.width > 1 && this.height > 1) {
+      this.chooseDirection(mode);
+      int bound2 = this.width;
+      if (!this.isVertical) {
+        bound2 = this.height;
+      }
+      for (SeamInfo seam : batchFinder.findSeams(this, Math.min(k - removed, bound2 - 1))) {
+        removedWeight += seam.totalWeight;
+        this.seamToRemove = seam;
+        this.removeSeam();
+        removed += 1;
+      }
+    }
+    return removedWeight;
+  }
+
+  // removes seams from this Picture until it is no bigger than the given width and height, in
+  // the order that a transport map of a thumbnail of it finds loses the least energy, rather
+  // than one direction after the other or at random. Runs of seams in the same direction are
+  // carved together
+  // returns the total weight of the removed seams
+  // EFFECT: removes seams from this Picture, reducing width and/or height
+  double retarget(int targetWidth, int targetHeight) {
+    boolean[] order = TransportMap.order(this.toArgb(), this.width, this.height,
+        Math.max(0, this.height - targetHeight), Math.max(0, this.width - targetWidth),
+        TransportMap.THUMBNAIL_PIXELS);
+    double removedWeight = 0;
+    int step = 0;
+    while (step < order.length) {
+      int run = 1;
+      while (step + run < order.length && order[step + run] == order[step]) {
+        run += 1;
+      }
+      if (order[step]) {
+        removedWeight += this.carve(run, new VerticalMode());
+      }
+      else {
+        removedWeight += this.carve(run, new HorizontalMode());
+      }
+      step += run;
+    }
+    return removedWeight;
+  }
+
+  // biases the seams found from now on by the given mask, which must be the size of this
+  // Picture, or stops biasing them if the mask is null
+  // EFFECT: modifies mask and forgets the seam to remove, the highlighted seam and the kept seam
+  // table. A new mask also clears history, since it has no biases for the seams removed so far
+  void useMask(BiasMask mask) {
+    this.mask = mask;
+    this.seamToRemove = null;
+    this.highlightedSeam = null;
+    this.seamTable = null;
+    if (mask != null) {
+      this.history.clear();
+      this.seamsRemoved = 0;
+    }
+  }
+
+  // reports the time, pixels and allocation of every phase of carving from now on to the given
+  // sink. The phases never overlap, except "seam", which covers everything carve does to remove
+  // one seam:
+  //   "energy"     computing stale energies, a whole update (or the strip near a removed seam)
+  //                at a time, since timing each pixel would cost more than computing it
+  //   "dp"         filling in the total weights of every pixel, by updateSeams or a finder
+  //   "patchSeams" recomputing the total weights near a removed seam in a kept seam table
+  //   "backtrace"  tracing the lightest seam (or seams) back through the filled weights
+  //   "removeSeam" unlinking a seam's pixels from the grid
+  //   "makeScene"  drawing the frame
+  // EFFECT: modifies metrics
+  void useMetrics(IMetricsSink metrics) {
+    this.metrics = metrics;
+  }
+
+  // removes seams one after the other, in the direction(s) given by the given mode, until no
+  // pixel the mask marks for removal is left, keeping the seam table between seams like carve.
+  // Stops early if there is no mask, or if the picture gets down to one pixel wide or high
+  // returns the number of seams removed
+  // EFFECT: removes seams from this Picture, reducing width and/or height
+  int removeMasked(IMode mode) {
+    boolean wasIncremental = this.isIncremental;
+    this.isIncremental = true;
+    int removed = 0;
+    while (this.mask != null && this.mask.removals > 0 && this.width > 1 && this.height > 1) {
+      this.carve(1, mode);
+      removed += 1;
+    }
+    this.isIncremental = wasIncremental;
+    if (!wasIncremental) {
+      this.seamTable = null;
+    }
+    return removed;
+  }
+
+  // adds k seams to this Picture in the direction(s) given by the given mode, making it wider or
+  // taller without stretching the parts with the most energy. Each search finds as many of the
+  // lightest seams that share no pixels as are still needed, and every one of them is doubled.
+  // A seam that is highlighted is dropped, since its pixels stay where they are
+  // EFFECT: adds seams to this Picture, increasing width and/or height
+  void enlarge(int k, IMode mode) {
+    RollingSeamFinder batchFinder = new RollingSeamFinder();
+    this.seamToRemove = null;
+    this.highlightedSeam = null;
+    this.seamTable = null;
+    this.frame = null;
+    int inserted = 0;
+    while (inserted < k) {
+      this.chooseDirection(mode);
+      int bound2 = this.width;
+      if (!this.isVertical) {
+        bound2 = this.height;
       }
-      else if (this.mode.isHorizontal()) {
-        this.isVertical = false;
+      for (SeamInfo seam : batchFinder.findSeams(this, Math.min(k - inserted, bound2))) {
+        this.insertSeam(seam);
+        inserted += 1;
       }
     }
+  }
+
+  // puts a copy of the given seam next to it in the current direction: right of a vertical seam,
+  // or below a horizontal one. Each copied pixel is colored halfway between the seam's pixel and
+  // the one the copy is put in front of
+  // EFFECT: adds a pixel to every row (or column) of this Picture, increasing width (or height),
+  // marks the pixels around the copy as needing their energies recalculated, and clears history
+  // and the mask, since the removed seams and the biases no longer line up with the pixels
+  void insertSeam(SeamInfo seam) {
+    this.history.clear();
+    this.seamsRemoved = 0;
+    this.mask = null;
+    int bound1 = this.height;
+    if (!this.isVertical) {
+      bound1 = this.width;
+    }
+    APixel[] seamPixels = new APixel[bound1];
+    SeamInfo cell = seam;
+    for (int d1 = bound1 - 1; d1 >= 0; d1 -= 1) {
+      seamPixels[d1] = cell.thisPixel;
+      cell = cell.cameFrom;
+    }
+
+    APixel[] copies = new APixel[bound1];
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      APixel pixel = seamPixels[d1];
+      if (this.isVertical) {
+        copies[d1] = new Pixel(null, null, null, null, pixel.right.blendWith(pixel.color));
+        pixel.insertVert(copies[d1]);
+      }
+      else {
+        copies[d1] = new Pixel(null, null, null, null, pixel.down.blendWith(pixel.color));
+        pixel.insertHoriz(copies[d1]);
+      }
+    }
+
+    // the copy gets a sentinel of its own at the start of its column (row), and is linked to the
+    // pixels of the d1s around it. Inserting shifts the other side of the seam over by one in every
+    // d1, so only the pixels where the seam steps across need new links
+    SentinelPixel edge = new SentinelPixel();
+    if (this.isVertical) {
+      seamPixels[0].up.insertVert(edge);
+      edge.linkAbove(copies[0]);
+    }
     else {
-      ArrayList<ArrayList<SeamInfo>> seams = new ArrayList<ArrayList<SeamInfo>>();
-      this.updateSeams(seams);
+      seamPixels[0].left.insertHoriz(edge);
+      edge.linkLeftOf(copies[0]);
+    }
+    for (int d1 = 1; d1 < bound1; d1 += 1) {
+      APixel prev = seamPixels[d1 - 1];
+      APixel prevCopy = copies[d1 - 1];
+      APixel pixel = seamPixels[d1];
+      APixel copy = copies[d1];
+      if (this.isVertical) {
+        if (prev.down == pixel) {
+          prevCopy.linkAbove(copy);
+        }
+        else if (prev.down.right == pixel) {
+          prevCopy.right.linkAbove(copy);
+          prevCopy.linkAbove(pixel);
+        }
+        else {
+          prevCopy.linkAbove(copy.right);
+          prev.linkAbove(copy);
+        }
+      }
+      else {
+        if (prev.right == pixel) {
+          prevCopy.linkLeftOf(copy);
+        }
+        else if (prev.right.down == pixel) {
+          prevCopy.down.linkLeftOf(copy);
+          prevCopy.linkLeftOf(pixel);
+        }
+        else {
+          prevCopy.linkLeftOf(copy.down);
+          prev.linkLeftOf(copy);
+        }
+      }
+    }
+
+    if (this.isVertical) {
+      this.width += 1;
+    }
+    else {
+      this.height += 1;
+    }
+    this.relinkEdges();
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      copies[d1].invalidateNeighbours();
+    }
+  }
+
+  // links the last row (column) of this Picture back around to the sentinels at the top (left)
+  // of every column (row), for the current direction. The seam's first and last pixels can be
+  // far apart, so every pixel in between has moved over relative to its sentinel
+  // EFFECT: modifies the down links of the last row and the up links of the top sentinels, or the
+  // right links of the last column and the left links of the row sentinels
+  void relinkEdges() {
+    if (this.isVertical) {
+      APixel edge = this.topLeft.right;
+      APixel last = this.topLeft.up.right;
+      for (int col = 0; col < this.width; col += 1) {
+        last.linkAbove(edge);
+        edge = edge.right;
+        last = last.right;
+      }
+    }
+    else {
+      APixel edge = this.topLeft.down;
+      APixel last = this.topLeft.left.down;
+      for (int row = 0; row < this.height; row += 1) {
+        last.linkLeftOf(edge);
+        edge = edge.down;
+        last = last.down;
+      }
+    }
+  }
+
+  // removes the seam labeled by the seamToRemove field from this Picture, recording it in
+  // history so it can be undone. Any seams undone before it can no longer be redone
+  // EFFECT: alters seamToRemove to have a null cameFrom, adjusts the pixels
+  // representing this
+  // Picture to account for the removed seam
+  void removeSeam() {
+    long startNanos = this.metrics.startNanos();
+    long startBytes = this.metrics.startBytes();
+    int[] path = this.seamPath();
+    int[] removedPath = path;
+    if (removedPath == null) {
+      removedPath = this.highlightedSeam;
+    }
+    this.highlightedSeam = null;
+
+    int bound1 = this.height;
+    if (!this.isVertical) {
+      bound1 = this.width;
+    }
+    if (removedPath == null && this.mask != null) {
+      // the mask can only follow the pixels if it knows where the seam is
+      removedPath = this.pathOf(this.seamToRemove);
+    }
+    int[] offsets = null;
+    if (removedPath != null) {
+      offsets = Arrays.copyOf(removedPath, bound1);
+    }
+    SeamRecord removed = new SeamRecord(this.seamToRemove, this.isVertical, bound1, offsets);
+    removed.unlink();
+    if (this.mask != null) {
+      removed.bias = this.mask.biasAlong(offsets, this.isVertical);
+      this.mask.removeSeam(offsets, this.isVertical);
+    }
+    while (this.seamToRemove.cameFrom != null) {
+      this.seamToRemove = this.seamToRemove.cameFrom;
+    }
+    if (this.isVertical) {
+      this.width -= 1;
+    }
+    else {
+      this.height -= 1;
+    }
+    while (this.history.size() > this.seamsRemoved) {
+      this.history.remove(this.history.size() - 1);
+    }
+    this.history.add(removed);
+    this.seamsRemoved += 1;
+    this.trimHistory();
+
+    if (this.frame != null && removedPath != null) {
+      this.markDirty(removedPath);
+    }
+    else if (this.frame != null) {
+      this.markAllDirty();
+    }
+    this.metrics.record("removeSeam", startNanos, startBytes, bound1);
+
+    if (path != null) {
+      this.patchSeams(path);
+    }
+    else {
+      this.seamTable = null;
+    }
+  }
+
+  // puts back the last seam removed from this Picture, if there is one
+  // EFFECT: relinks the seam's pixels, increasing width or height, and forgets the seam to
+  // remove, the highlighted seam and the kept seam table
+  void undo() {
+    if (this.seamsRemoved == 0) {
+      return;
+    }
+    this.seamsRemoved -= 1;
+    SeamRecord seam = this.history.get(this.seamsRemoved);
+    seam.relink();
+    if (this.mask != null) {
+      this.mask.insertSeam(seam.offsets, seam.bias, seam.isVertical);
+    }
+    if (seam.isVertical) {
+      this.width += 1;
+    }
+    else {
+      this.height += 1;
+    }
+    this.afterHistoryMove(seam);
+  }
+
+  // removes the last seam that was undone again, if there is one
+  // EFFECT: unlinks the seam's pixels, reducing width or height, and forgets the seam to remove,
+  // the highlighted seam and the kept seam table
+  void redo() {
+    if (this.seamsRemoved == this.history.size()) {
+      return;
+    }
+    SeamRecord seam = this.history.get(this.seamsRemoved);
+    this.seamsRemoved += 1;
+    seam.unlink();
+    if (this.mask != null) {
+      this.mask.removeSeam(seam.offsets, seam.isVertical);
+    }
+    if (seam.isVertical) {
+      this.width -= 1;
+    }
+    else {
+      this.height -= 1;
+    }
+    this.afterHistoryMove(seam);
+  }
+
+  // undoes or redoes seams until the given number of seams from history are removed, or as
+  // close to it as history goes. Takes time in proportion to the number of seams moved over
+  // EFFECT: modifies this Picture like undo and redo do
+  void scrubTo(int seams) {
+    while (this.seamsRemoved > Math.max(0, seams)) {
+      this.undo();
+    }
+    while (this.seamsRemoved < Math.min(this.history.size(), seams)) {
+      this.redo();
+    }
+  }
+
+  // keeps at most the given number of removed seams to undo from now on, forgetting the oldest
+  // past it. Carving without ever undoing keeps none, so the pixels it removes can be collected
+  // EFFECT: modifies historyLimit, and drops seams from the front of history
+  void keepHistory(int limit) {
+    this.historyLimit = Math.max(0, limit);
+    this.trimHistory();
+  }
+
+  // forgets the oldest removed seams in history until it holds no more than historyLimit, then
+  // the seams undone last if that is not enough, since a seam can only be redone after every
+  // seam before it
+  // EFFECT: removes seams from either end of history, lowering seamsRemoved for each removed one
+  // forgotten
+  void trimHistory() {
+    int forgotten = Math.min(this.history.size() - this.historyLimit, this.seamsRemoved);
+    if (forgotten > 0) {
+      this.history.subList(0, forgotten).clear();
+      this.seamsRemoved -= forgotten;
+    }
+    if (this.history.size() > this.historyLimit) {
+      this.history.subList(this.historyLimit, this.history.size()).clear();
+    }
+  }
+
+  // forgets everything worked out for the picture as it was before the given seam was put back
+  // or taken out again, and marks what has to be drawn again
+  // EFFECT: modifies seamToRemove, highlightedSeam, seamTable and the record of what frame shows
+  void afterHistoryMove(SeamRecord seam) {
+    this.seamToRemove = null;
+    this.highlightedSeam = null;
+    this.seamTable = null;
+    if (this.frame == null) {
+      return;
+    }
+    if (this.width > this.frameWidth || this.height > this.frameHeight) {
+      this.frame = null;
+    }
+    else if (seam.offsets != null) {
+      this.markDirty(seam.offsets, seam.isVertical);
+    }
+    else {
+      this.markAllDirty();
+    }
+  }
+
+  // brings the cached energy of every pixel in this Picture up to date. With an energyPool, the
+  // image is split into bands of rows whose energies are computed at the same time. Each pixel's
+  // energy only depends on the colors around it, so the result is the same either way
+  // EFFECT: recalculates the energy of every pixel whose energy is stale, after marking every
+  // pixel stale if the energies depend on the direction and it has changed
+  void updateEnergies() {
+    long startNanos = this.metrics.startNanos();
+    long startBytes = this.metrics.startBytes();
+    if (this.energyFunction.isDirectional() && this.energyVertical != this.isVertical) {
+      this.markAllStale();
+    }
+    this.energyVertical = this.isVertical;
+    APixel[] rowStarts = new APixel[this.height];
+    APixel nextRowPixel = this.topLeft;
+    for (int row = 0; row < this.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      rowStarts[row] = nextRowPixel;
+    }
+
+    if (this.energyPool == null) {
+      new EnergyBand(rowStarts, this.width, 0, this.height, this.height, this.energyFunction,
+          this.isVertical).compute();
+    }
+    else {
+      int bandHeight = Math.max(1, this.height / (4 * this.energyPool.getParallelism()));
+      this.energyPool.invoke(new EnergyBand(rowStarts, this.width, 0, this.height, bandHeight,
+          this.energyFunction, this.isVertical));
+    }
+    this.metrics.record("energy", startNanos, startBytes, (long) this.width * this.height);
+  }
 
-      // finds the SeamInfo in the bottom row or rightmost column with the least total
-      // weight
-      int bound1;
-      int bound2;
+  // the energy of the given pixel in this Picture, measured by its energy function for the
+  // current direction
+  // EFFECT: caches the energy of the given pixel
+  double energyOf(APixel pixel) {
+    return pixel.energy(this.energyFunction, this.isVertical);
+  }
+
+  // the weight a seam adds up at the given pixel, at the given d1 and d2 in the current
+  // direction: its energy, plus its bias in the mask if there is one
+  double weightOf(APixel pixel, int d1, int d2) {
+    if (this.mask == null) {
+      return this.energyOf(pixel);
+    }
+    return this.energyOf(pixel) + this.mask.biasAt(d1, d2, this.isVertical);
+  }
+
+  // measures energy with the given function from now on
+  // EFFECT: marks every pixel's energy stale, drops the kept seam table, and has the next render
+  // draw every pixel
+  void useEnergy(IEnergyFunction energyFunction) {
+    this.energyFunction = energyFunction;
+    this.markAllStale();
+    this.seamTable = null;
+    if (this.frame != null) {
+      this.markAllDirty();
+    }
+  }
+
+  // marks every pixel in this Picture as needing its energy recalculated
+  // EFFECT: sets isEnergyStale in every pixel
+  void markAllStale() {
+    APixel nextRowPixel = this.topLeft;
+    for (int row = 0; row < this.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < this.width; col += 1) {
+        nextPixel.isEnergyStale = true;
+        nextPixel = nextPixel.right;
+      }
+    }
+  }
+
+  // the seam table for the current direction. In incremental mode, the table kept from the last
+  // tick is reused unless it was built for the other direction
+  // EFFECT: in incremental mode, keeps the table it returns in seamTable
+  ArrayList<ArrayList<SeamInfo>> currentSeams() {
+    if (this.isIncremental && this.seamTable != null && this.isTableVertical == this.isVertical) {
+      return this.seamTable;
+    }
+    ArrayList<ArrayList<SeamInfo>> seams = new ArrayList<ArrayList<SeamInfo>>();
+    this.updateSeams(seams);
+    if (this.isIncremental) {
+      this.seamTable = seams;
+      this.isTableVertical = this.isVertical;
+    }
+    return seams;
+  }
+
+  // the position across the kept seam table (d2) of each SeamInfo in seamToRemove, from first
+  // to last. Returns null if no table is being kept for this direction, or if seamToRemove did
+  // not come from it
+  int[] seamPath() {
+    if (!this.isIncremental || this.seamTable == null || this.isTableVertical != this.isVertical) {
+      return null;
+    }
+    return this.pathIn(this.seamTable, this.seamToRemove);
+  }
+
+  // the position across the given seam table (d2) of each SeamInfo in the given seam, from first
+  // to last. Returns null if the seam did not come from the table
+  int[] pathIn(ArrayList<ArrayList<SeamInfo>> seams, SeamInfo seam) {
+    int bound1 = seams.size();
+    int[] path = new int[bound1];
+    SeamInfo cell = seam;
+    path[bound1 - 1] = seams.get(bound1 - 1).indexOf(cell);
+    if (path[bound1 - 1] < 0) {
+      return null;
+    }
+    for (int d1 = bound1 - 1; d1 > 0; d1 -= 1) {
+      cell = cell.cameFrom;
+      ArrayList<SeamInfo> prevRow = seams.get(d1 - 1);
+      path[d1 - 1] = -1;
+      for (int d2 = Math.max(0, path[d1] - 1); d2 <= Math.min(prevRow.size() - 1, path[d1] + 1);
+          d2 += 1) {
+        if (prevRow.get(d2) == cell) {
+          path[d1 - 1] = d2;
+        }
+      }
+      if (path[d1 - 1] < 0) {
+        return null;
+      }
+    }
+    return path;
+  }
+
+  // the d2 at every d1 of the given seam, in the current direction, found by walking along each
+  // d1 from its sentinel to the seam's pixel. This takes time in proportion to the whole
+  // picture, so it is only for seams that did not come with their path
+  int[] pathOf(SeamInfo seam) {
+    int bound1 = this.height;
+    if (!this.isVertical) {
+      bound1 = this.width;
+    }
+    APixel[] seamPixels = new APixel[bound1];
+    SeamInfo cell = seam;
+    for (int d1 = bound1 - 1; d1 >= 0; d1 -= 1) {
+      seamPixels[d1] = cell.thisPixel;
+      cell = cell.cameFrom;
+    }
+    int[] path = new int[bound1];
+    APixel nextD1Pixel = this.topLeft;
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      APixel nextPixel;
       if (this.isVertical) {
-        bound1 = this.height;
-        bound2 = this.width;
+        nextD1Pixel = nextD1Pixel.down;
+        nextPixel = nextD1Pixel.right;
       }
       else {
-        bound1 = this.width;
-        bound2 = this.height;
+        nextD1Pixel = nextD1Pixel.right;
+        nextPixel = nextD1Pixel.down;
+      }
+      while (nextPixel != seamPixels[d1]) {
+        path[d1] += 1;
+        if (this.isVertical) {
+          nextPixel = nextPixel.right;
+        }
+        else {
+          nextPixel = nextPixel.down;
+        }
+      }
+    }
+    return path;
+  }
+
+  // brings seamTable up to date after the seam going through the given d2 of every d1 was
+  // removed. Removing a seam only changes energies right next to it, so only the cells near the
+  // seam, and the cells below any cell whose total weight changed, are recomputed. While metrics
+  // are kept, the stale energies next to the seam are brought up to date first, so they are not
+  // counted as part of recomputing the weights
+  // EFFECT: removes the seam's SeamInfos from seamTable and updates the affected SeamInfos in
+  // place
+  void patchSeams(int[] path) {
+    ArrayList<ArrayList<SeamInfo>> seams = this.seamTable;
+    int bound1 = seams.size();
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      seams.get(d1).remove(path[d1]);
+    }
+    int bound2 = seams.get(0).size();
+    int radius = this.energyFunction.radius();
+
+    // the energies are computed lazily below anyway; computing them first only pays off when
+    // their time is being kept apart
+    if (this.metrics.isRecording()) {
+      long energyNanos = this.metrics.startNanos();
+      long energyBytes = this.metrics.startBytes();
+      long energyPixels = 0;
+      for (int d1 = 0; d1 < bound1; d1 += 1) {
+        int pathLow = path[d1];
+        int pathHigh = path[d1];
+        for (int near = Math.max(0, d1 - 1); near <= Math.min(bound1 - 1, d1 + 1); near += 1) {
+          pathLow = Math.min(pathLow, path[near]);
+          pathHigh = Math.max(pathHigh, path[near]);
+        }
+        ArrayList<SeamInfo> row = seams.get(d1);
+        for (int d2 = Math.max(0, pathLow - radius - 1);
+            d2 <= Math.min(bound2 - 1, pathHigh + radius); d2 += 1) {
+          this.energyOf(row.get(d2).thisPixel);
+          energyPixels += 1;
+        }
       }
+      this.metrics.record("energy", energyNanos, energyBytes, energyPixels);
+    }
+
+    long startNanos = this.metrics.startNanos();
+    long startBytes = this.metrics.startBytes();
+    long pixels = 0;
 
-      SeamInfo seamToHighlight = seams.get(bound1 - 1).get(0);
-      for (int d2 = 1; d2 < bound2; d2 += 1) {
-        if (seams.get(bound1 - 1).get(d2).totalWeight < seamToHighlight.totalWeight) {
-          seamToHighlight = seams.get(bound1 - 1).get(d2);
+    // the range of d2s whose total weight changed in the previous d1. Empty to start with
+    int changedLow = bound2;
+    int changedHigh = -1;
+    for (int d1 = 0; d1 < bound1; d1 += 1) {
+      // the cells whose neighbourhood changed lie within a column of the seam's path in this d1
+      // and the ones next to it
+      int pathLow = path[d1];
+      int pathHigh = path[d1];
+      for (int near = Math.max(0, d1 - 1); near <= Math.min(bound1 - 1, d1 + 1); near += 1) {
+        pathLow = Math.min(pathLow, path[near]);
+        pathHigh = Math.max(pathHigh, path[near]);
+      }
+      int low = Math.max(0, Math.min(pathLow - radius - 1, changedLow - 1));
+      int high = Math.min(bound2 - 1, Math.max(pathHigh + radius, changedHigh + 1));
+
+      changedLow = bound2;
+      changedHigh = -1;
+      ArrayList<SeamInfo> row = seams.get(d1);
+      for (int d2 = low; d2 <= high; d2 += 1) {
+        SeamInfo cell = row.get(d2);
+        double oldWeight = cell.totalWeight;
+        if (d1 == 0) {
+          cell.totalWeight = this.weightOf(cell.thisPixel, d1, d2);
+        }
+        else {
+          cell.cameFrom = this.bestCameFrom(seams.get(d1 - 1), d2, cell.thisPixel);
+          cell.totalWeight = cell.cameFrom.totalWeight
+              + this.stepCostFrom(seams.get(d1 - 1), d2, cell.thisPixel, cell.cameFrom)
+              + this.weightOf(cell.thisPixel, d1, d2);
+        }
+        if (cell.totalWeight != oldWeight) {
+          changedLow = Math.min(changedLow, d2);
+          changedHigh = d2;
         }
       }
-
-      // updates the seamToRemove field so that, in the next tick, this seam will be
-      // removed from
-      // this image
-      this.seamToRemove = seamToHighlight;
-
-      // highlights the seam in red
-      while (seamToHighlight.cameFrom != null) {
-        seamToHighlight.thisPixel.highlight();
-        seamToHighlight = seamToHighlight.cameFrom;
-      }
-      seamToHighlight.thisPixel.highlight();
+      pixels += Math.max(0, high - low + 1);
     }
+    this.metrics.record("patchSeams", startNanos, startBytes, pixels);
   }
 
-  // responds to user key presses
-  public void onKeyEvent(String key) {
-    if (key.equals(" ")) {
-      // space pauses the world
-      this.isRemoving = !this.isRemoving;
-    }
-    else if (key.equals("b")) {
-      // "b" toggles grayscale for cell energies
-      this.showEnergies = !this.showEnergies;
-      this.showSeamWeights = false;
+  // the SeamInfo in the given row of the seam table that a seam through the given d2 of the
+  // next row should come from: the lightest of the (up to) three SeamInfos next to it
+  SeamInfo bestCameFrom(ArrayList<SeamInfo> prevRow, int d2) {
+    SeamInfo cameFrom = prevRow.get(d2);
+    if (d2 != 0 && prevRow.get(d2 - 1).totalWeight < cameFrom.totalWeight) {
+      cameFrom = prevRow.get(d2 - 1);
     }
-    else if (key.equals("r")) {
-      // "r" changes the removing mode to random
-      this.mode = new RandomMode();
-    }
-    else if (key.equals("h")) {
-      // "h" changes the removing mode to horizontal
-      this.mode = new HorizontalMode();
-    }
-    else if (key.equals("v")) {
-      // "v" changes the removing mode to vertical
-      this.mode = new VerticalMode();
-    }
-    else if (key.equals("s")) {
-      // "s" toggles grayscale for seam weights
-      this.showEnergies = false;
-      this.showSeamWeights = !this.showSeamWeights;
+    if (d2 != prevRow.size() - 1 && prevRow.get(d2 + 1).totalWeight < cameFrom.totalWeight) {
+      cameFrom = prevRow.get(d2 + 1);
     }
+    return cameFrom;
   }
 
-  // removes the seam labeled by the seamToRemove field from this Picture
-  // EFFECT: alters seamToRemove to have a null cameFrom, adjusts the pixels
-  // representing this
-  // Picture to account for the removed seam
-  void removeSeam() {
-    APixel currentPixel = this.seamToRemove.thisPixel;
-    while (this.seamToRemove.cameFrom != null) {
-      currentPixel = this.seamToRemove.thisPixel;
-      if (isVertical) {
-        currentPixel.removeVert(this.seamToRemove.cameFrom);
+  // the SeamInfo in the given row of the seam table that a seam through the given pixel, at the
+  // given d2 of the next row, should come from, counting what the energy function charges for
+  // stepping across
+  SeamInfo bestCameFrom(ArrayList<SeamInfo> prevRow, int d2, APixel pixel) {
+    if (!this.energyFunction.hasStepCosts()) {
+      return this.bestCameFrom(prevRow, d2);
+    }
+    SeamInfo cameFrom = prevRow.get(d2);
+    double best = cameFrom.totalWeight + this.energyFunction.stepCost(pixel, 0, this.isVertical);
+    if (d2 != 0) {
+      double left = prevRow.get(d2 - 1).totalWeight
+          + this.energyFunction.stepCost(pixel, -1, this.isVertical);
+      if (left < best) {
+        cameFrom = prevRow.get(d2 - 1);
+        best = left;
       }
-      else {
-        currentPixel.removeHoriz(this.seamToRemove.cameFrom);
+    }
+    if (d2 != prevRow.size() - 1) {
+      double right = prevRow.get(d2 + 1).totalWeight
+          + this.energyFunction.stepCost(pixel, 1, this.isVertical);
+      if (right < best) {
+        cameFrom = prevRow.get(d2 + 1);
       }
-
-      this.seamToRemove = this.seamToRemove.cameFrom;
     }
+    return cameFrom;
+  }
 
-    if (this.isVertical) {
-      this.seamToRemove.thisPixel.removeVert(this.seamToRemove.cameFrom);
-      this.seamToRemove.thisPixel.up.removeVert(this.seamToRemove.cameFrom);
-      this.width -= 1;
+  // what the energy function charges a seam for reaching the given pixel, at the given d2 of the
+  // next row, from the given SeamInfo in the given row of the seam table
+  double stepCostFrom(ArrayList<SeamInfo> prevRow, int d2, APixel pixel, SeamInfo cameFrom) {
+    if (!this.energyFunction.hasStepCosts()) {
+      return 0;
     }
-    else {
-      this.seamToRemove.thisPixel.removeHoriz(this.seamToRemove.cameFrom);
-      this.seamToRemove.thisPixel.left.removeHoriz(this.seamToRemove.cameFrom);
-      this.height -= 1;
+    int step = 0;
+    if (d2 != 0 && prevRow.get(d2 - 1) == cameFrom) {
+      step = -1;
     }
-
+    else if (d2 != prevRow.size() - 1 && prevRow.get(d2 + 1) == cameFrom) {
+      step = 1;
+    }
+    return this.energyFunction.stepCost(pixel, step, this.isVertical);
   }
 
   // fills the given 2D SeamInfo array with the proper SeamInfos from this Picture
@@ -340,6 +1317,9 @@ class Picture extends World {
   // SeamInfo for every pixel
   // in this Picture
   void updateSeams(ArrayList<ArrayList<SeamInfo>> seams) {
+    this.updateEnergies();
+    long startNanos = this.metrics.startNanos();
+    long startBytes = this.metrics.startBytes();
     int bound1;
     int bound2;
     if (this.isVertical) {
@@ -365,20 +1345,13 @@ class Picture extends World {
       seams.add(new ArrayList<SeamInfo>());
       for (int d2 = 0; d2 < bound2; d2 += 1) {
         if (d1 == 0) {
-          seams.get(d1).add(new SeamInfo(nextPixel, nextPixel.calculateEnergy()));
+          seams.get(d1).add(new SeamInfo(nextPixel, this.weightOf(nextPixel, d1, d2)));
         }
         else {
-          SeamInfo cameFrom = seams.get(d1 - 1).get(d2);
-          if (d2 != 0 && seams.get(d1 - 1).get(d2 - 1).totalWeight < cameFrom.totalWeight) {
-            cameFrom = seams.get(d1 - 1).get(d2 - 1);
-          }
-          if (d2 != bound2 - 1
-              && seams.get(d1 - 1).get(d2 + 1).totalWeight < cameFrom.totalWeight) {
-            cameFrom = seams.get(d1 - 1).get(d2 + 1);
-          }
-
-          seams.get(d1).add(new SeamInfo(nextPixel,
-              cameFrom.totalWeight + nextPixel.calculateEnergy(), cameFrom));
+          SeamInfo cameFrom = this.bestCameFrom(seams.get(d1 - 1), d2, nextPixel);
+          seams.get(d1).add(new SeamInfo(nextPixel, cameFrom.totalWeight
+              + this.stepCostFrom(seams.get(d1 - 1), d2, nextPixel, cameFrom)
+              + this.weightOf(nextPixel, d1, d2), cameFrom));
         }
         if (this.isVertical) {
           nextPixel = nextPixel.right;
@@ -388,6 +1361,56 @@ class Picture extends World {
         }
       }
     }
+    this.metrics.record("dp", startNanos, startBytes, (long) bound1 * bound2);
+  }
+}
+
+// Calculates the energies of a band of rows of a Picture. Bands taller than bandHeight are split
+// in half, and the halves are calculated at the same time. Pixels cache their brightness when
+// they are made, so bands only read the pixels around them and write their own
+class EnergyBand extends RecursiveAction {
+  private static final long serialVersionUID = 1L; // tasks are never serialized, but
+  // RecursiveAction is Serializable
+  APixel[] rowStarts; // the SentinelPixel at the start of every row of the picture
+  int width; // the width of the picture
+  int low; // the first row in this band
+  int high; // the row after the last row in this band
+  int bandHeight; // the tallest band that is calculated without being split
+  IEnergyFunction energyFunction; // how the energies are measured
+  boolean isVertical; // the direction seams run in, for energies that depend on it
+
+  // the constructor
+  EnergyBand(APixel[] rowStarts, int width, int low, int high, int bandHeight,
+      IEnergyFunction energyFunction, boolean isVertical) {
+    this.rowStarts = rowStarts;
+    this.width = width;
+    this.low = low;
+    this.high = high;
+    this.bandHeight = bandHeight;
+    this.energyFunction = energyFunction;
+    this.isVertical = isVertical;
+  }
+
+  // calculates the energy of every pixel in this band
+  // EFFECT: caches the energy of every pixel in the rows from low up to high
+  protected void compute() {
+    if (this.high - this.low <= this.bandHeight) {
+      for (int row = this.low; row < this.high; row += 1) {
+        APixel nextPixel = this.rowStarts[row].right;
+        for (int col = 0; col < this.width; col += 1) {
+          nextPixel.energy(this.energyFunction, this.isVertical);
+          nextPixel = nextPixel.right;
+        }
+      }
+    }
+    else {
+      int middle = (this.low + this.high) / 2;
+      RecursiveAction.invokeAll(
+          new EnergyBand(this.rowStarts, this.width, this.low, middle, this.bandHeight,
+              this.energyFunction, this.isVertical),
+          new EnergyBand(this.rowStarts, this.width, middle, this.high, this.bandHeight,
+              this.energyFunction, this.isVertical));
+    }
   }
 }
 
@@ -398,6 +1421,10 @@ abstract class APixel {
   APixel left;
   APixel right;
   Color color;
+  double energy; // the energy of this pixel the last time it was calculated
+  boolean isEnergyStale; // true if the pixels around this one changed since energy was cached
+  double brightness; // the brightness of this pixel's color
+  Color brightnessOf; // the color brightness was calculated from
 
   // Initializes a pixel and places it in the grid of pixels surrounded by these
   // pixels
@@ -407,6 +1434,8 @@ abstract class APixel {
     this.left = left;
     this.right = right;
     this.color = color;
+    this.isEnergyStale = true;
+    this.calculateBrightness();
   }
 
   // Initializes a stand alone pixel.
@@ -416,11 +1445,21 @@ abstract class APixel {
     this.left = null;
     this.right = null;
     this.color = Color.BLACK;
+    this.isEnergyStale = true;
+    this.calculateBrightness();
   }
 
-  // Calculates the brightness of a pixel
+  // Calculates the brightness of a pixel. The brightness is only worked out again if the color
+  // has been replaced since the last time; every pixel's brightness is read by each of its eight
+  // neighbours whenever their energies are calculated
+  // EFFECT: caches the brightness of this pixel's color
   double calculateBrightness() {
-    return ((double) (color.getRed() + color.getGreen() + color.getBlue())) / 3 / 255.0;
+    if (this.brightnessOf != this.color) {
+      this.brightness = ((double) (color.getRed() + color.getGreen() + color.getBlue())) / 3
+          / 255.0;
+      this.brightnessOf = this.color;
+    }
+    return this.brightness;
   }
 
   // Calculates the horizontal energy of a pixel from its surroundings
@@ -445,16 +1484,62 @@ abstract class APixel {
         .sqrt(Math.pow(this.calculateHorizEnergy(), 2) + Math.pow(this.calculateVertEnergy(), 2));
   }
 
+  // the energy of this pixel, recalculated by the given function for seams in the given direction
+  // if the pixels around it have changed since the last time it was asked for
+  // EFFECT: caches the energy of this pixel
+  double energy(IEnergyFunction energyFunction, boolean isVertical) {
+    if (this.isEnergyStale) {
+      this.energy = energyFunction.energyOf(this, isVertical);
+      this.isEnergyStale = false;
+    }
+    return this.energy;
+  }
+
+  // marks the eight pixels surrounding this one as needing their energies recalculated, since
+  // they are the only ones whose energy depends on this pixel
+  // EFFECT: sets isEnergyStale in each of the surrounding pixels
+  void invalidateNeighbours() {
+    this.up.left.isEnergyStale = true;
+    this.up.isEnergyStale = true;
+    this.up.right.isEnergyStale = true;
+    this.left.isEnergyStale = true;
+    this.right.isEnergyStale = true;
+    this.down.left.isEnergyStale = true;
+    this.down.isEnergyStale = true;
+    this.down.right.isEnergyStale = true;
+  }
+
   // Removes this pixel from the grid of pixels in this picture
+  // EFFECT: also marks the pixels around this one as needing their energies recalculated
   void removeVert(SeamInfo nextSeam) {
+    if (nextSeam == null) {
+      this.unlinkVert(null);
+    }
+    else {
+      this.unlinkVert(nextSeam.thisPixel);
+    }
+  }
+
+  // Removes this pixel from the grid of pixels in this picture
+  // EFFECT: also marks the pixels around this one as needing their energies recalculated
+  void removeHoriz(SeamInfo nextSeam) {
+    if (nextSeam == null) {
+      this.unlinkHoriz(null);
+    }
+    else {
+      this.unlinkHoriz(nextSeam.thisPixel);
+    }
+  }
+
+  // Removes this pixel from its row, given the pixel of the same vertical seam in the row above,
+  // which is removed next (or null). This pixel keeps its own links
+  // EFFECT: also marks the pixels around this one as needing their energies recalculated
+  void unlinkVert(APixel nextPixel) {
+    this.invalidateNeighbours();
     this.left.right = this.right;
     this.right.left = this.left;
-    APixel nextPixel = null;
-    if (nextSeam != null) {
-      nextPixel = nextSeam.thisPixel;
-    }
 
-    if (nextSeam == null || this.up == nextPixel) {
+    if (nextPixel == null || this.up == nextPixel) {
       // do nothing
     }
     else if (this.up.left == nextPixel) {
@@ -467,16 +1552,15 @@ abstract class APixel {
     }
   }
 
-  // Removes this pixel from the grid of pixels in this picture
-  void removeHoriz(SeamInfo nextSeam) {
+  // Removes this pixel from its column, given the pixel of the same horizontal seam in the
+  // column to the left, which is removed next (or null). This pixel keeps its own links
+  // EFFECT: also marks the pixels around this one as needing their energies recalculated
+  void unlinkHoriz(APixel nextPixel) {
+    this.invalidateNeighbours();
     this.up.down = this.down;
     this.down.up = this.up;
-    APixel nextPixel = null;
-    if (nextSeam != null) {
-      nextPixel = nextSeam.thisPixel;
-    }
 
-    if (nextSeam == null || this.left == nextPixel) {
+    if (nextPixel == null || this.left == nextPixel) {
       // do nothing
     }
     else if (this.left.up == nextPixel) {
@@ -489,9 +1573,75 @@ abstract class APixel {
     }
   }
 
-  // Highlights this pixel
-  void highlight() {
-    this.color = Color.RED;
+  // Puts this pixel back in its row, undoing unlinkVert with the same next pixel. The pixels
+  // removed after this one must have been put back already
+  // EFFECT: also marks this pixel and the pixels around it as needing their energies
+  // recalculated
+  void relinkVert(APixel nextPixel) {
+    this.left.right = this;
+    this.right.left = this;
+    if (nextPixel != null && this.up != nextPixel
+        && (this.up.left == nextPixel || this.up.right == nextPixel)) {
+      this.up.down = this;
+      nextPixel.down.up = nextPixel;
+    }
+    this.isEnergyStale = true;
+    this.invalidateNeighbours();
+  }
+
+  // Puts this pixel back in its column, undoing unlinkHoriz with the same next pixel. The pixels
+  // removed after this one must have been put back already
+  // EFFECT: also marks this pixel and the pixels around it as needing their energies
+  // recalculated
+  void relinkHoriz(APixel nextPixel) {
+    this.up.down = this;
+    this.down.up = this;
+    if (nextPixel != null && this.left != nextPixel
+        && (this.left.up == nextPixel || this.left.down == nextPixel)) {
+      this.left.right = this;
+      nextPixel.right.left = nextPixel;
+    }
+    this.isEnergyStale = true;
+    this.invalidateNeighbours();
+  }
+
+  // puts the given pixel right after this one in its row
+  // EFFECT: links the given pixel between this pixel and the one to its right
+  void insertVert(APixel pixel) {
+    pixel.left = this;
+    pixel.right = this.right;
+    this.right.left = pixel;
+    this.right = pixel;
+  }
+
+  // puts the given pixel right after this one in its column
+  // EFFECT: links the given pixel between this pixel and the one below it
+  void insertHoriz(APixel pixel) {
+    pixel.up = this;
+    pixel.down = this.down;
+    this.down.up = pixel;
+    this.down = pixel;
+  }
+
+  // makes the given pixel the one below this one
+  // EFFECT: modifies this pixel's down and the given pixel's up
+  void linkAbove(APixel below) {
+    this.down = below;
+    below.up = this;
+  }
+
+  // makes the given pixel the one right of this one
+  // EFFECT: modifies this pixel's right and the given pixel's left
+  void linkLeftOf(APixel right) {
+    this.right = right;
+    right.left = this;
+  }
+
+  // the color halfway between this pixel's color and the given one
+  Color blendWith(Color other) {
+    return new Color((this.color.getRed() + other.getRed()) / 2,
+        (this.color.getGreen() + other.getGreen()) / 2,
+        (this.color.getBlue() + other.getBlue()) / 2);
   }
 }
 
@@ -514,9 +1664,9 @@ class SentinelPixel extends APixel {
     this.color = Color.BLACK;
   }
 
-  // doesn't highlight a sentinel pixel
-  void highlight() {
-    // Do not highlight this pixel, since it's not on the screen
+  // the given color, since a sentinel is past the edge of the picture and has no color to blend
+  Color blendWith(Color other) {
+    return other;
   }
 }
 
@@ -610,6 +1760,13 @@ class ExamplesSqueeze {
 
     this.initTestConditions();
 
+    p4.onKeyEvent("i");
+    p5.isIncremental = !p5.isIncremental;
+
+    t.checkExpect(p4, p5);
+
+    this.initTestConditions();
+
     // Pressing v does not switch the direction a seam is removed between
     // the highlighting and removal of a seam, it waits until it is finished.
     p4.isVertical = false;
@@ -743,6 +1900,80 @@ class ExamplesSqueeze {
 
     t.checkExpect(p3.makeScene(), ws);
     t.checkExpect(p.makeScene(), ws2);
+
+    // the highlighted seam is drawn in red over the picture
+    p3.onTick();
+    ws = new WorldScene(3, 3);
+    cpi = new ComputedPixelImage(3, 3);
+    nextRowPixel = p3.topLeft;
+    for (int row = 0; row < 3; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < 3; col += 1) {
+        cpi.setPixel(col, row, nextPixel.color);
+        nextPixel = nextPixel.right;
+      }
+    }
+    cpi.setPixel(2, 0, Color.RED);
+    cpi.setPixel(1, 1, Color.RED);
+    cpi.setPixel(1, 2, Color.RED);
+    ws.placeImageXY(cpi, 1, 1);
+    t.checkExpect(p3.makeScene(), ws);
+
+    // after the seam is removed, only the pixels from just before it onward are drawn again,
+    // and the column the picture no longer covers is cleared
+    p3.onTick();
+    t.checkExpect(p3.rowDirtyFrom, new int[] { 0, 0, 0 });
+    t.checkExpect(p3.colDirtyFrom,
+        new int[] { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE });
+    ws = new WorldScene(2, 3);
+    cpi = new ComputedPixelImage(3, 3);
+    nextRowPixel = p3.topLeft;
+    for (int row = 0; row < 3; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < 2; col += 1) {
+        cpi.setPixel(col, row, nextPixel.color);
+        nextPixel = nextPixel.right;
+      }
+      cpi.setPixel(2, row, new Color(0, 0, 0, 0));
+    }
+    ws.placeImageXY(cpi, 1, 1);
+    t.checkExpect(p3.makeScene(), ws);
+
+    // a wide picture only marks the pixels from just before the removed seam onward
+    p.makeScene();
+    p.onTick();
+    int[] path = p.highlightedSeam.clone();
+    p.onTick();
+    boolean isNearSeam = true;
+    boolean isAnyRowKept = false;
+    for (int row = 0; row < p.height; row += 1) {
+      isNearSeam = isNearSeam
+          && p.rowDirtyFrom[row] >= path[row] - p.energyFunction.radius() - 1;
+      isAnyRowKept = isAnyRowKept || p.rowDirtyFrom[row] > 0;
+    }
+    t.checkExpect(isNearSeam, true);
+    t.checkExpect(isAnyRowKept, true);
+
+    // the kept frame, drawn again only where it was marked, matches drawing the whole picture
+    // from scratch, with the column the picture no longer covers cleared
+    Picture fresh = new Picture("balloons.jpg");
+    fresh.carve(1, new VerticalMode());
+    p.makeScene();
+    fresh.makeScene();
+    int mismatches = 0;
+    for (int row = 0; row < 343; row += 1) {
+      for (int col = 0; col < 799; col += 1) {
+        if (!p.frame.getColorAt(col, row).equals(fresh.frame.getColorAt(col, row))) {
+          mismatches += 1;
+        }
+      }
+      if (!p.frame.getColorAt(799, row).equals(Picture.BLANK)) {
+        mismatches += 1;
+      }
+    }
+    t.checkExpect(mismatches, 0);
   }
 
   // Check the On Tick Functionality
@@ -763,14 +1994,16 @@ class ExamplesSqueeze {
 
     p3.onTick();
 
+    // the highlighted seam is remembered without repainting its pixels
+    t.checkExpect(p3.highlightedSeam, new int[] { 2, 1, 1 });
     t.checkExpect(p3.topLeft.down.right.color, new Color(10, 10, 10));
     t.checkExpect(p3.topLeft.down.right.right.color, new Color(15, 15, 15));
-    t.checkExpect(p3.topLeft.down.right.right.right.color, new Color(255, 0, 0));
+    t.checkExpect(p3.topLeft.down.right.right.right.color, new Color(5, 5, 5));
     t.checkExpect(p3.topLeft.down.right.down.color, new Color(40, 40, 40));
-    t.checkExpect(p3.topLeft.down.right.down.right.color, new Color(255, 0, 0));
+    t.checkExpect(p3.topLeft.down.right.down.right.color, new Color(20, 20, 20));
     t.checkExpect(p3.topLeft.down.right.down.right.right.color, new Color(30, 30, 30));
     t.checkExpect(p3.topLeft.down.right.down.down.color, new Color(100, 50, 0));
-    t.checkExpect(p3.topLeft.down.right.down.down.right.color, new Color(255, 0, 0));
+    t.checkExpect(p3.topLeft.down.right.down.down.right.color, new Color(50, 50, 50));
     t.checkExpect(p3.topLeft.down.right.down.down.right.right.color, new Color(60, 60, 60));
     t.checkExpect(p3.width, 3);
     t.checkInexact(p3.seamToRemove,
@@ -791,6 +2024,7 @@ class ExamplesSqueeze {
     t.checkExpect(p3.topLeft.down.down.down.right.right.color, new Color(60, 60, 60));
     t.checkExpect(p3.width, 2);
     t.checkInexact(p3.seamToRemove, new SeamInfo(removedPixel, 0.36996004439, null), .001);
+    t.checkExpect(p3.highlightedSeam, null);
 
     // test horizontal ticks
 
@@ -808,9 +2042,10 @@ class ExamplesSqueeze {
 
     p6.onTick();
 
-    t.checkExpect(p6.topLeft.down.right.color, new Color(255, 0, 0));
-    t.checkExpect(p6.topLeft.down.right.right.color, new Color(255, 0, 0));
-    t.checkExpect(p6.topLeft.down.right.right.right.color, new Color(255, 0, 0));
+    t.checkExpect(p6.highlightedSeam, new int[] { 0, 0, 0 });
+    t.checkExpect(p6.topLeft.down.right.color, new Color(10, 10, 10));
+    t.checkExpect(p6.topLeft.down.right.right.color, new Color(15, 15, 15));
+    t.checkExpect(p6.topLeft.down.right.right.right.color, new Color(5, 5, 5));
     t.checkExpect(p6.topLeft.down.right.down.color, new Color(40, 40, 40));
     t.checkExpect(p6.topLeft.down.right.down.right.color, new Color(20, 20, 20));
     t.checkExpect(p6.topLeft.down.right.down.right.right.color, new Color(30, 30, 30));
@@ -892,6 +2127,361 @@ class ExamplesSqueeze {
         1.0196871, new SeamInfo(p3.topLeft.right.down.right.right, 0.36996004, null)), .001);
   }
 
+  // tests that patching the kept seam table after each removal gives the same seams as
+  // rebuilding it every tick, in both directions
+  void testIncrementalSeams(Tester t) {
+    Picture incremental = new Picture("balloons.jpg", new Random(6));
+    Picture rebuilt = new Picture("balloons.jpg", new Random(6));
+    incremental.isIncremental = true;
+
+    for (int i = 0; i < 12; i += 1) {
+      incremental.onTick();
+      rebuilt.onTick();
+      t.checkExpect(incremental.isVertical, rebuilt.isVertical);
+      t.checkInexact(incremental.seamToRemove.totalWeight, rebuilt.seamToRemove.totalWeight,
+          0.000001);
+      incremental.onTick();
+      rebuilt.onTick();
+    }
+
+    // the patched table matches one built from scratch
+    ArrayList<ArrayList<SeamInfo>> fresh = new ArrayList<ArrayList<SeamInfo>>();
+    rebuilt.updateSeams(fresh);
+    ArrayList<ArrayList<SeamInfo>> kept = incremental.currentSeams();
+    t.checkExpect(kept.size(), fresh.size());
+    int mismatches = 0;
+    for (int d1 = 0; d1 < fresh.size(); d1 += 1) {
+      for (int d2 = 0; d2 < fresh.get(d1).size(); d2 += 1) {
+        if (kept.get(d1).get(d2).totalWeight != fresh.get(d1).get(d2).totalWeight) {
+          mismatches += 1;
+        }
+      }
+    }
+    t.checkExpect(mismatches, 0);
+
+    // removing a seam that did not come from the kept table throws the table away
+    this.initTestConditions();
+    p3.isIncremental = true;
+    p3.currentSeams();
+    p3.seamToRemove = new SeamInfo(p3.topLeft.down.right.down.down.right, 0.43315141,
+        new SeamInfo(p3.topLeft.down.right.down, 0.6106828,
+            new SeamInfo(p3.topLeft.down.right, 0.4384447, null)));
+    p3.removeSeam();
+    t.checkExpect(p3.seamTable, null);
+  }
+
+  // true if the given pictures are the same size and every pixel is the same color
+  boolean sameColors(Picture p1, Picture p2) {
+    if (p1.width != p2.width || p1.height != p2.height) {
+      return false;
+    }
+    boolean same = true;
+    APixel nextRowPixel1 = p1.topLeft;
+    APixel nextRowPixel2 = p2.topLeft;
+    for (int row = 0; row < p1.height; row += 1) {
+      nextRowPixel1 = nextRowPixel1.down;
+      nextRowPixel2 = nextRowPixel2.down;
+      APixel nextPixel1 = nextRowPixel1.right;
+      APixel nextPixel2 = nextRowPixel2.right;
+      for (int col = 0; col < p1.width; col += 1) {
+        same = same && nextPixel1.color.equals(nextPixel2.color);
+        nextPixel1 = nextPixel1.right;
+        nextPixel2 = nextPixel2.right;
+      }
+    }
+    return same;
+  }
+
+  // tests reading the colors of a Picture out as ARGB values
+  void testToArgb(Tester t) {
+    this.initTestConditions();
+
+    t.checkExpect(p3.toArgb(), new int[] { new Color(10, 10, 10).getRGB(),
+        new Color(15, 15, 15).getRGB(), new Color(5, 5, 5).getRGB(),
+        new Color(40, 40, 40).getRGB(), new Color(20, 20, 20).getRGB(),
+        new Color(30, 30, 30).getRGB(), new Color(100, 50, 0).getRGB(),
+        new Color(50, 50, 50).getRGB(), new Color(60, 60, 60).getRGB() });
+
+    p3.carve(1, new VerticalMode());
+    t.checkExpect(p3.toArgb(), new int[] { new Color(10, 10, 10).getRGB(),
+        new Color(15, 15, 15).getRGB(), new Color(40, 40, 40).getRGB(),
+        new Color(30, 30, 30).getRGB(), new Color(100, 50, 0).getRGB(),
+        new Color(60, 60, 60).getRGB() });
+  }
+
+  // tests removing several seams at once with carve
+  void testCarve(Tester t) {
+    this.initTestConditions();
+
+    t.checkInexact(p3.carve(1, new VerticalMode()), 1.452838575, 0.001);
+    t.checkExpect(p3.width, 2);
+    t.checkExpect(p3.topLeft.down.right.color, new Color(10, 10, 10));
+    t.checkExpect(p3.topLeft.down.right.right.color, new Color(15, 15, 15));
+    t.checkExpect(p3.topLeft.down.right.down.color, new Color(40, 40, 40));
+    t.checkExpect(p3.topLeft.down.right.down.right.color, new Color(30, 30, 30));
+    t.checkExpect(p3.topLeft.down.down.down.right.color, new Color(100, 50, 0));
+    t.checkExpect(p3.topLeft.down.down.down.right.right.color, new Color(60, 60, 60));
+    t.checkExpect(p3.isIncremental, false);
+    t.checkExpect(p3.seamTable, null);
+
+    // stops once the picture is one pixel wide
+    t.checkExpect(p3.carve(5, new VerticalMode()) > 0, true);
+    t.checkExpect(p3.width, 1);
+
+    // carving gives the same picture as removing seams one tick at a time, including a seam
+    // that was already highlighted
+    p4.mode = new VerticalMode();
+    p4.onTick();
+    p4.onTick();
+    p4.onTick();
+    p4.carve(2, new HorizontalMode());
+    p5.carve(2, new VerticalMode());
+    p5.carve(1, new HorizontalMode());
+    t.checkExpect(this.sameColors(p4, p5), true);
+    t.checkExpect(p5.width, 798);
+    t.checkExpect(p5.height, 342);
+
+    // a batch takes several seams out of one search
+    t.checkExpect(pRun.carveBatch(20, new VerticalMode()) > 0, true);
+    t.checkExpect(pRun.width, 780);
+    t.checkExpect(pRun.height, 343);
+    pRun.carveBatch(3, new HorizontalMode());
+    t.checkExpect(pRun.height, 340);
+
+    // a highlighted seam is removed first by a batch too, and counts as one of the k
+    Picture highlighted = new Picture("balloons.jpg");
+    Picture carved = new Picture("balloons.jpg");
+    highlighted.mode = new VerticalMode();
+    highlighted.onTick();
+    carved.mode = new VerticalMode();
+    carved.onTick();
+    t.checkExpect(highlighted.carveBatch(1, new HorizontalMode()) > 0, true);
+    carved.carve(1, new HorizontalMode());
+    t.checkExpect(highlighted.width, 799);
+    t.checkExpect(highlighted.height, 343);
+    t.checkExpect(highlighted.highlightedSeam, null);
+    t.checkExpect(this.sameColors(highlighted, carved), true);
+  }
+
+  // is every pixel of the given picture linked to the pixels around it, with the last row and
+  // column linked back around to the sentinels?
+  boolean isWellLinked(Picture p) {
+    APixel[][] grid = new APixel[p.height + 1][p.width + 1];
+    APixel nextRowPixel = p.topLeft;
+    for (int row = 0; row <= p.height; row += 1) {
+      APixel nextPixel = nextRowPixel;
+      for (int col = 0; col <= p.width; col += 1) {
+        grid[row][col] = nextPixel;
+        nextPixel = nextPixel.right;
+      }
+      if (nextPixel != nextRowPixel) {
+        return false;
+      }
+      nextRowPixel = nextRowPixel.down;
+    }
+    for (int row = 0; row <= p.height; row += 1) {
+      for (int col = 0; col <= p.width; col += 1) {
+        APixel pixel = grid[row][col];
+        if (pixel.down != grid[(row + 1) % (p.height + 1)][col]
+            || pixel.down.up != pixel || pixel.right.left != pixel) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  // test the retarget method in the Picture class
+  void testRetarget(Tester t) {
+    this.initTestConditions();
+
+    t.checkExpect(p4.retarget(780, 330) > 0, true);
+    t.checkExpect(p4.width, 780);
+    t.checkExpect(p4.height, 330);
+    t.checkExpect(p4.isIncremental, false);
+    // a picture already small enough is left alone
+    t.checkInexact(p3.retarget(5, 5), 0.0, 0.000001);
+    t.checkExpect(p3.width, 3);
+    t.checkExpect(p3.retarget(2, 3) > 0, true);
+    t.checkExpect(p3.width, 2);
+    t.checkExpect(p3.height, 3);
+  }
+
+  // test the enlarge method in the Picture class
+  void testEnlarge(Tester t) {
+    this.initTestConditions();
+    int[] before = p3.toArgb();
+
+    // the lightest vertical seam goes through columns 2, 1, 1, and is copied to its right
+    p3.enlarge(1, new VerticalMode());
+    t.checkExpect(p3.width, 4);
+    t.checkExpect(p3.height, 3);
+    t.checkExpect(this.isWellLinked(p3), true);
+    int[] after = p3.toArgb();
+    t.checkExpect(after[0], before[0]);
+    t.checkExpect(after[2], before[2]);
+    t.checkExpect(after[3], before[2]);
+    t.checkExpect(after[4 + 1], before[3 + 1]);
+    t.checkExpect(after[4 + 2], new Pixel(null, null, null, null, new Color(before[3 + 1]))
+        .blendWith(new Color(before[3 + 2])).getRGB());
+    t.checkExpect(after[4 + 3], before[3 + 2]);
+    t.checkExpect(after[8 + 3], before[6 + 2]);
+
+    // more seams than fit in one search take several, in either direction
+    p3.enlarge(5, new VerticalMode());
+    t.checkExpect(p3.width, 9);
+    t.checkExpect(this.isWellLinked(p3), true);
+    p6.enlarge(4, new HorizontalMode());
+    t.checkExpect(p6.height, 7);
+    t.checkExpect(p6.width, 3);
+    t.checkExpect(this.isWellLinked(p6), true);
+
+    // a highlighted seam is dropped, and the energies around the copies are recalculated
+    p4.mode = new VerticalMode();
+    p4.onTick();
+    p4.enlarge(40, new RandomMode());
+    t.checkExpect(p4.width + p4.height, 800 + 343 + 40);
+    t.checkExpect(p4.highlightedSeam, null);
+    t.checkExpect(this.isWellLinked(p4), true);
+    p4.onTick();
+    p4.onTick();
+    t.checkExpect(p4.width + p4.height, 800 + 343 + 39);
+  }
+
+  // test the undo, redo and scrubTo methods in the Picture class
+  void testUndo(Tester t) {
+    this.initTestConditions();
+    Picture carved = new Picture("balloons.jpg", new Random(7));
+    int[] original = carved.toArgb();
+    carved.carve(6, new RandomMode());
+    int[] afterSix = carved.toArgb();
+    int width = carved.width;
+    t.checkExpect(carved.history.size(), 6);
+    t.checkExpect(carved.seamsRemoved, 6);
+    t.checkExpect(carved.history.get(0).pixels.length - 1,
+        carved.history.get(0).offsets.length);
+
+    // undoing every seam puts back the picture, links and all
+    carved.scrubTo(0);
+    t.checkExpect(carved.width, 800);
+    t.checkExpect(carved.height, 343);
+    t.checkExpect(carved.toArgb(), original);
+    t.checkExpect(this.isWellLinked(carved), true);
+    t.checkExpect(carved.seamToRemove, null);
+    carved.undo();
+    t.checkExpect(carved.seamsRemoved, 0);
+
+    // and redoing them takes the same seams out again
+    carved.redo();
+    t.checkExpect(carved.seamsRemoved, 1);
+    carved.scrubTo(100);
+    t.checkExpect(carved.seamsRemoved, 6);
+    t.checkExpect(carved.width, width);
+    t.checkExpect(carved.toArgb(), afterSix);
+
+    // the energies around seams that were put back are recalculated
+    carved.scrubTo(3);
+    carved.carve(3, new VerticalMode());
+    Picture fresh = new Picture("balloons.jpg", new Random(7));
+    fresh.carve(3, new RandomMode());
+    fresh.carve(3, new VerticalMode());
+    t.checkExpect(carved.toArgb(), fresh.toArgb());
+    t.checkExpect(carved.history.size(), 6);
+
+    // a capped history forgets the oldest seams, and the ones still kept can be undone
+    carved.keepHistory(4);
+    t.checkExpect(carved.history.size(), 4);
+    t.checkExpect(carved.seamsRemoved, 4);
+    carved.scrubTo(0);
+    Picture firstTwo = new Picture("balloons.jpg", new Random(7));
+    firstTwo.carve(2, new RandomMode());
+    t.checkExpect(carved.toArgb(), firstTwo.toArgb());
+    carved.redo();
+    carved.keepHistory(0);
+    t.checkExpect(carved.history.size(), 0);
+    t.checkExpect(carved.seamsRemoved, 0);
+    carved.carve(2, new VerticalMode());
+    t.checkExpect(carved.history.size(), 0);
+    carved.undo();
+    t.checkExpect(carved.width + carved.height, 800 + 343 - 5);
+
+    // the keys undo and redo seams removed while the world runs
+    p3.onTick();
+    p3.onTick();
+    t.checkExpect(p3.width, 2);
+    p3.onKeyEvent("u");
+    t.checkExpect(p3.width, 3);
+    t.checkExpect(this.isWellLinked(p3), true);
+    p3.onKeyEvent("y");
+    t.checkExpect(p3.width, 2);
+
+    // a seam removed with the frame drawn marks where it goes back in to be drawn again
+    p.makeScene();
+    p.carve(2, new VerticalMode());
+    p.makeScene();
+    p.undo();
+    t.checkExpect(p.rowDirtyFrom[0] < p.width, true);
+    p.makeScene();
+    t.checkExpect(p.frame.getColorAt(798, 0).getRGB(), p.toArgb()[798]);
+  }
+
+  // test carving with a mask, and removing what it marks
+  void testMask(Tester t) {
+    this.initTestConditions();
+
+    // seams keep out of the protected left half, and the mask follows the pixels
+    int[] original = p.toArgb();
+    BiasMask protect = new BiasMask(800, 343);
+    protect.fill(0, 0, 400, 343, BiasMask.PROTECT);
+    p.useMask(protect);
+    p.carve(30, new VerticalMode());
+    t.checkExpect(protect.width, 770);
+    t.checkExpect(protect.biasAt(399, 200), BiasMask.PROTECT);
+    t.checkExpect(protect.biasAt(400, 200), 0.0f);
+    int[] carved = p.toArgb();
+    boolean kept = true;
+    for (int row = 0; row < 343; row += 1) {
+      for (int col = 0; col < 400; col += 1) {
+        kept = kept && carved[row * 770 + col] == original[row * 800 + col];
+      }
+    }
+    t.checkExpect(kept, true);
+
+    // removing an object carves until none of it is left, with either finder
+    BiasMask object = new BiasMask(800, 343);
+    object.fill(600, 50, 10, 100, BiasMask.REMOVE);
+    t.checkExpect(object.removals, 1000);
+    p4.useMask(object);
+    t.checkExpect(p4.removeMasked(new VerticalMode()), 10);
+    t.checkExpect(p4.width, 790);
+    t.checkExpect(object.removals, 0);
+    BiasMask sameObject = new BiasMask(800, 343);
+    sameObject.fill(600, 50, 10, 100, BiasMask.REMOVE);
+    p5.finder = new RollingSeamFinder();
+    p5.useMask(sameObject);
+    t.checkExpect(p5.removeMasked(new VerticalMode()), 10);
+    t.checkExpect(p5.toArgb(), p4.toArgb());
+
+    // undoing puts the object's biases back with its pixels
+    p4.scrubTo(0);
+    t.checkExpect(object.removals, 1000);
+    t.checkExpect(object.width, 800);
+    t.checkExpect(object.biasAt(605, 100), BiasMask.REMOVE);
+    t.checkExpect(p4.toArgb(), original);
+    p4.redo();
+    t.checkExpect(object.width, 799);
+
+    // a seam without a path is found by walking the grid
+    p6.isVertical = false;
+    p6.seamToRemove = p6.finder.findSeam(p6);
+    t.checkExpect(p6.pathOf(p6.seamToRemove), p6.finder.lastPath());
+    p6.showSeamWeights = true;
+    p6.useMask(new BiasMask(3, 3));
+    p6.mask.set(1, 1, BiasMask.REMOVE);
+    p6.makeScene();
+    t.checkExpect(p6.frame.getColorAt(1, 1), new Color(0, 0, 0));
+  }
+
   // test the removeSeam method in the Picture class
   void testRemoveSeam(Tester t) {
     this.initTestConditions();
@@ -1029,24 +2619,12 @@ class ExamplesSqueeze {
     pixel = new Pixel(sp, sp, sp, sp, new Color(85, 170, 255));
     t.checkInexact(pixel.calculateBrightness(), 2.0 / 3, 0.001);
 
-  }
-
-  // test the highlight method in APixel
-  void testHighlight(Tester t) {
-
-    initPixelGrid();
-
-    surroundedPixel.highlight();
-
-    t.checkExpect(surroundedPixel.color, Color.red);
-
-    SentinelPixel p = new SentinelPixel();
-
-    SentinelPixel p2 = new SentinelPixel();
-
-    p.highlight();
-
-    t.checkExpect(p, p2);
+    // brightness is cached, and recalculated when the color is replaced
+    t.checkExpect(pixel.brightnessOf, new Color(85, 170, 255));
+    t.checkInexact(pixel.brightness, 2.0 / 3, 0.001);
+    pixel.color = Color.BLACK;
+    t.checkInexact(pixel.calculateBrightness(), 0.0, 0.001);
+    t.checkExpect(pixel.brightnessOf, Color.BLACK);
 
   }
 
@@ -1077,4 +2655,80 @@ class ExamplesSqueeze {
     // Energy works with sentinel pixels on edges
     t.checkInexact(surroundedPixel.left.calculateEnergy(), 0.610682, 0.01);
   }
+
+  // tests that computing energies in parallel bands gives the same energies as computing them
+  // one at a time
+  void testUpdateEnergies(Tester t) {
+    this.initTestConditions();
+    p.energyPool = new ForkJoinPool(4);
+    p.updateEnergies();
+    p3.updateEnergies();
+
+    int wrong = 0;
+    APixel nextRowPixel = p.topLeft;
+    for (int row = 0; row < p.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < p.width; col += 1) {
+        if (nextPixel.isEnergyStale || nextPixel.energy != nextPixel.calculateEnergy()) {
+          wrong += 1;
+        }
+        nextPixel = nextPixel.right;
+      }
+    }
+    t.checkExpect(wrong, 0);
+    t.checkExpect(p3.topLeft.down.right.isEnergyStale, false);
+    t.checkExpect(p3.topLeft.down.down.down.right.right.right.isEnergyStale, false);
+    t.checkInexact(p3.topLeft.down.right.right.right.energy, 0.36996004, 0.001);
+
+    // carving with energies computed in parallel removes the same seams
+    Picture parallel = new Picture("balloons.jpg", new Random(6));
+    Picture sequential = new Picture("balloons.jpg", new Random(6));
+    parallel.energyPool = p.energyPool;
+    parallel.finder = new RollingSeamFinder();
+    for (int i = 0; i < 6; i += 1) {
+      parallel.onTick();
+      sequential.onTick();
+      t.checkExpect(parallel.seamToRemove.totalWeight, sequential.seamToRemove.totalWeight);
+      parallel.onTick();
+      sequential.onTick();
+    }
+    p.energyPool.shutdown();
+  }
+
+  // tests that energies are cached until the pixels around them change
+  void testEnergy(Tester t) {
+    initPixelGrid();
+
+    t.checkExpect(surroundedPixel.isEnergyStale, true);
+    t.checkInexact(surroundedPixel.energy(new GradientEnergy(), true), 0.6496, 0.01);
+    t.checkExpect(surroundedPixel.isEnergyStale, false);
+
+    // the cached energy is kept until a neighbour is invalidated
+    surroundedPixel.left.color = Color.WHITE;
+    t.checkInexact(surroundedPixel.energy(new GradientEnergy(), true), 0.6496, 0.01);
+    surroundedPixel.left.invalidateNeighbours();
+    t.checkExpect(surroundedPixel.isEnergyStale, true);
+    t.checkInexact(surroundedPixel.energy(new GradientEnergy(), true),
+        surroundedPixel.calculateEnergy(), 0.0001);
+
+    // removing a seam only invalidates the pixels next to it
+    this.initTestConditions();
+    p.onTick();
+    p.onTick();
+    int stale = 0;
+    APixel nextRowPixel = p.topLeft;
+    for (int row = 0; row < p.height; row += 1) {
+      nextRowPixel = nextRowPixel.down;
+      APixel nextPixel = nextRowPixel.right;
+      for (int col = 0; col < p.width; col += 1) {
+        if (nextPixel.isEnergyStale) {
+          stale += 1;
+        }
+        nextPixel = nextPixel.right;
+      }
+    }
+    t.checkExpect(stale >= 2 * p.height, true);
+    t.checkExpect(stale <= 4 * p.height, true);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+import tester.*;
+
+// Finds the order in which to remove vertical and horizontal seams from a picture that has to
+// lose both columns and rows, so that the seams removed weigh as little as possible altogether.
+// T(r, c), the least total weight of removing r horizontal and c vertical seams, is the lighter
+// of removing a horizontal seam after T(r - 1, c) and removing a vertical seam after T(r, c - 1).
+// Every state needs the picture as its own removals left it, so the map is worked out on a
+// thumbnail, and only the pictures for one r are kept at a time: cols + 1 thumbnails, however
+// many rows are removed.
+class TransportMap {
+  static final int THUMBNAIL_PIXELS = 1 << 16; // the most pixels in the thumbnail the map is
+  // worked out on
+  int rows; // the number of horizontal seams removed
+  int cols; // the number of vertical seams removed
+  double[] costs; // T(rows, c) for every c
+  boolean[] isVerticalStep; // for every state (r, c), at r * (cols + 1) + c, true if its last
+  // removal was a vertical seam
+
+  // works out the transport map for removing the given numbers of horizontal and vertical seams
+  // from the given picture
+  // EFFECT: removes the given number of horizontal seams from the given picture
+  TransportMap(PackedPicture p, int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    this.costs = new double[cols + 1];
+    this.isVerticalStep = new boolean[(rows + 1) * (cols + 1)];
+
+    // images[c] is the picture of state (r, c) for the r being worked out, or of (r - 1, c) if
+    // that state has not been reached yet
+    PackedPicture[] images = new PackedPicture[cols + 1];
+    images[0] = p;
+    for (int r = 0; r <= rows; r += 1) {
+      for (int c = 0; c <= cols; c += 1) {
+        if (r == 0 && c == 0) {
+          continue;
+        }
+        double viaHorizontal = Double.POSITIVE_INFINITY;
+        int[] horizontalSeam = null;
+        if (r > 0) {
+          horizontalSeam = images[c].findSeam(false);
+          viaHorizontal = this.costs[c] + images[c].seamWeight(horizontalSeam, false);
+        }
+        double viaVertical = Double.POSITIVE_INFINITY;
+        int[] verticalSeam = null;
+        if (c > 0) {
+          verticalSeam = images[c - 1].findSeam(true);
+          viaVertical = this.costs[c - 1] + images[c - 1].seamWeight(verticalSeam, true);
+        }
+
+        if (viaVertical < viaHorizontal) {
+          images[c] = new PackedPicture(images[c - 1]);
+          images[c].removeVerticalSeam(verticalSeam);
+          this.costs[c] = viaVertical;
+          this.isVerticalStep[r * (cols + 1) + c] = true;
+        }
+        else {
+          images[c].removeHorizontalSeam(horizontalSeam);
+          this.costs[c] = viaHorizontal;
+        }
+      }
+    }
+  }
+
+  // the least total weight of removing all of this map's seams
+  double cost() {
+    return this.costs[this.cols];
+  }
+
+  // the direction of every seam, from first removed to last, on the lightest way through this
+  // map: true for a vertical seam
+  boolean[] order() {
+    boolean[] order = new boolean[this.rows + this.cols];
+    int r = this.rows;
+    int c = this.cols;
+    for (int step = order.length - 1; step >= 0; step -= 1) {
+      order[step] = this.isVerticalStep[r * (this.cols + 1) + c];
+      if (order[step]) {
+        c -= 1;
+      }
+      else {
+        r -= 1;
+      }
+    }
+    return order;
+  }
+
+  // the order to remove the given numbers of horizontal and vertical seams in from the picture
+  // with the given ARGB colors, listed row after row. The map is worked out on a thumbnail of at
+  // most the given number of pixels, and each of its steps stands for as many seams in the full
+  // picture as the thumbnail is smaller by
+  static boolean[] order(int[] argb, int width, int height, int rows, int cols,
+      int maxPixels) {
+    int factor = 1;
+    while ((long) (width / factor) * (height / factor) > maxPixels) {
+      factor += 1;
+    }
+    PackedPicture thumbnail = PackedPicture.scaledDown(argb, width, height, factor);
+    int thumbnailRows = Math.min((rows + factor - 1) / factor, thumbnail.height - 1);
+    int thumbnailCols = Math.min((cols + factor - 1) / factor, thumbnail.width - 1);
+    boolean[] thumbnailOrder = new TransportMap(thumbnail, thumbnailRows, thumbnailCols).order();
+    return TransportMap.expand(thumbnailOrder, factor, rows, cols);
+  }
+
+  // the order of the given numbers of horizontal and vertical seams that follows the given
+  // order, each of whose steps stands for factor seams. Steps past the number of seams needed
+  // in their direction are dropped, and seams the given order is short of come last
+  static boolean[] expand(boolean[] order, int factor, int rows, int cols) {
+    boolean[] expanded = new boolean[rows + cols];
+    int r = 0;
+    int c = 0;
+    for (int step = 0; step < order.length; step += 1) {
+      for (int i = 0; i < factor; i += 1) {
+        if (order[step] && c < cols) {
+          expanded[r + c] = true;
+          c += 1;
+        }
+        else if (!order[step] && r < rows) {
+          r += 1;
+        }
+      }
+    }
+    for (int step = r + c; step < expanded.length; step += 1) {
+      expanded[step] = c < cols;
+      if (c < cols) {
+        c += 1;
+      }
+    }
+    return expanded;
+  }
+}
+
+// Examples class for testing TransportMap
+class ExamplesTransportMap {
+
+  // the total weight of removing seams from a copy of the given picture in the given order
+  double replay(PackedPicture p, boolean[] order) {
+    PackedPicture copy = new PackedPicture(p);
+    copy.energies = new double[p.width * p.height];
+    copy.weights = new double[p.width * p.height];
+    double total = 0;
+    for (boolean isVertical : order) {
+      int[] seam = copy.findSeam(isVertical);
+      total += copy.seamWeight(seam, isVertical);
+      if (isVertical) {
+        copy.removeVerticalSeam(seam);
+      }
+      else {
+        copy.removeHorizontalSeam(seam);
+      }
+    }
+    return total;
+  }
+
+  // tests working out the transport map
+  void testTransportMap(Tester t) {
+    PackedPicture p3 = new PackedPicture("3by3img.jpg");
+    double verticalFirst = this.replay(p3, new boolean[] { true, false });
+    double horizontalFirst = this.replay(p3, new boolean[] { false, true });
+    TransportMap map = new TransportMap(p3, 1, 1);
+    t.checkInexact(map.cost(), Math.min(verticalFirst, horizontalFirst), 0.000001);
+    t.checkExpect(p3.width, 3);
+    t.checkExpect(p3.height, 2);
+    if (verticalFirst < horizontalFirst) {
+      t.checkExpect(map.order(), new boolean[] { true, false });
+    }
+    else {
+      t.checkExpect(map.order(), new boolean[] { false, true });
+    }
+
+    // replaying the order found removes exactly as much weight as the map says
+    PackedPicture small = PackedPicture.scaledDown(new PackedPicture("balloons.jpg").toArgb(),
+        800, 343, 16);
+    boolean[] order = new TransportMap(new PackedPicture(small), 3, 4).order();
+    t.checkExpect(order.length, 7);
+    int vertical = 0;
+    for (boolean isVertical : order) {
+      if (isVertical) {
+        vertical += 1;
+      }
+    }
+    t.checkExpect(vertical, 4);
+    t.checkInexact(this.replay(small, order), new TransportMap(new PackedPicture(small), 3, 4)
+        .cost(), 0.000001);
+  }
+
+  // tests turning an order worked out on a thumbnail into one for the full picture
+  void testExpand(Tester t) {
+    t.checkExpect(TransportMap.expand(new boolean[] { true, false, true }, 2, 2, 3),
+        new boolean[] { true, true, false, false, true });
+    t.checkExpect(TransportMap.expand(new boolean[] { false }, 3, 1, 2),
+        new boolean[] { false, true, true });
+    t.checkExpect(TransportMap.expand(new boolean[] {}, 1, 0, 0), new boolean[] {});
+
+    boolean[] order = TransportMap.order(new PackedPicture("balloons.jpg").toArgb(), 800, 343,
+        10, 30, 20000);
+    t.checkExpect(order.length, 40);
+  }
+}